@@ -0,0 +1,159 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import algorithms.FiducciaMattheysesAlgorithm;
+import algorithms.KernighanLinAlgorithm;
+import algorithms.MultilevelAlgorithm;
+import algorithms.PartitionState;
+import graph.CompactGraph;
+import graph.Graph;
+import graph.GraphGenerator;
+import graph.IntGraph;
+import graph.OffHeapGraph;
+import graph.Vertex;
+
+/**
+ * JMH benchmarks of graph construction and the partitioners on synthetic
+ * graphs of every generator family and growing size, giving the scaling
+ * curve of each. Build with mvn package and run
+ *
+ *     java -jar benchmarks/target/benchmarks.jar [regex] [-p family=grid -p vertices=1000]
+ *
+ * which takes every benchmark matching the regex, all of them by default,
+ * with the given parameters only.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PartitionBenchmark {
+
+    static final long SEED = 42;
+
+    @Param({ "grid", "geometric", "random", "rmat" })
+    public String family;
+
+    @Param({ "1000", "10000", "100000" })
+    public int vertices;
+
+    CompactGraph graph;
+    OffHeapGraph offHeap;
+    // every edge once as {one, two, weight}, for the construction benchmarks
+    int[][] edges;
+    // a Fiduccia Mattheyses split of graph, for the cut cost benchmark
+    int[] partition;
+
+    @Setup
+    public void setUp(){
+        graph = generate(family, vertices);
+        offHeap = OffHeapGraph.copyOf(graph);
+        edges = edgeList(graph);
+        partition = FiducciaMattheysesAlgorithm.process(graph).getPartition();
+    }
+
+    /**
+     *
+     * @return graph of the given family with about n vertices and average degree 4 to 16
+     */
+    static CompactGraph generate(String family, int n){
+        if(family.equals("grid")){
+            int side = (int) Math.ceil(Math.sqrt(n));
+            return GraphGenerator.grid(side, side);
+        }
+        if(family.equals("geometric")){
+            // about 6 neighbors on average
+            return GraphGenerator.randomGeometric(n, Math.sqrt(6 / (Math.PI * n)), SEED);
+        }
+        if(family.equals("random")){
+            return GraphGenerator.erdosRenyi(n, 8.0 / n, SEED);
+        }
+        if(family.equals("rmat")){
+            int scale = 32 - Integer.numberOfLeadingZeros(Math.max(1, n - 1));
+            return GraphGenerator.rmat(scale, 8, SEED);
+        }
+        throw new IllegalArgumentException("Unknown graph family " + family);
+    }
+
+    /**
+     *
+     * @return every edge of g once as {one, two, weight}
+     */
+    static int[][] edgeList(IntGraph g){
+        int[][] edges = new int[g.getEdgeCount()][];
+        int k = 0;
+        for(int v = 0; v < g.getVertexCount(); v++){
+            for(int i = 0; i < g.getDegree(v); i++){
+                int u = g.getNeighbor(v, i);
+                if(v < u){
+                    edges[k++] = new int[] { v, u, g.getNeighborWeight(v, i) };
+                }
+            }
+        }
+        return edges;
+    }
+
+    @Benchmark
+    public Graph graphConstruction(){
+        int n = graph.getVertexCount();
+        Vertex[] vs = new Vertex[n];
+        Graph g = new Graph();
+        for(int v = 0; v < n; v++){
+            vs[v] = new Vertex("" + v);
+            g.addVertex(vs[v], true);
+        }
+        for(int[] e : edges){
+            g.addEdge(vs[e[0]], vs[e[1]], e[2]);
+        }
+        return g;
+    }
+
+    @Benchmark
+    public CompactGraph compactGraphConstruction(){
+        CompactGraph.Builder builder = new CompactGraph.Builder(graph.getVertexCount());
+        for(int[] e : edges){
+            builder.addEdge(e[0], e[1], e[2]);
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public double kernighanLin(){
+        return KernighanLinAlgorithm.process(graph).getCutCost();
+    }
+
+    @Benchmark
+    public double fiducciaMattheyses(){
+        return FiducciaMattheysesAlgorithm.process(graph).getCutCost();
+    }
+
+    @Benchmark
+    public double fiducciaMattheysesOffHeap(){
+        return FiducciaMattheysesAlgorithm.process(offHeap).getCutCost();
+    }
+
+    @Benchmark
+    public double multilevel(){
+        return MultilevelAlgorithm.process(graph).getCutCost();
+    }
+
+    /** Sums the cut edges of a fixed split, the work getCutCost did before it was kept incrementally **/
+    @Benchmark
+    public long cutCost(){
+        return PartitionState.cutCost(graph, partition);
+    }
+}
@@ -0,0 +1,59 @@
+package jfr;
+
+import jdk.jfr.EventType;
+
+import algorithms.PartitionListener;
+import algorithms.PassStats;
+
+/**
+ * Listener that emits a PassEvent for every pass and a MoveEvent for every
+ * move to Flight Recorder, so that runs can be profiled with a recording
+ * started from the command line (-XX:StartFlightRecording) or jcmd, without
+ * recompiling. Pass events are on in the default settings, move events have
+ * to be enabled, as graphpartitioning.Move, since there is one per move.
+ * Events are only built while a recording wants them. Another listener, a
+ * PassCounters for example, may be given to be told the same.
+ * It may be shared by algorithms running on several threads.
+ *
+ */
+
+public class JfrPartitionListener implements PartitionListener {
+
+  private static final EventType PASS = EventType.getEventType(PassEvent.class);
+  private static final EventType MOVE = EventType.getEventType(MoveEvent.class);
+
+  final private PartitionListener next;
+
+  public JfrPartitionListener() {
+    this(null);
+  }
+
+  /** Emits the events and passes everything on to next, if not null **/
+  public JfrPartitionListener(PartitionListener next) {
+    this.next = next;
+  }
+
+  @Override
+  public void moveMade(String algorithm, int pass, int move, long gain, long cutCost) {
+    if (MOVE.isEnabled()) {
+      MoveEvent event = new MoveEvent();
+      event.algorithm = algorithm;
+      event.pass = pass;
+      event.move = move;
+      event.gain = gain;
+      event.cutCost = cutCost;
+      event.commit();
+    }
+    if (next != null) next.moveMade(algorithm, pass, move, gain, cutCost);
+  }
+
+  @Override
+  public void passFinished(PassStats stats) {
+    if (PASS.isEnabled()) {
+      PassEvent event = new PassEvent();
+      event.set(stats);
+      event.commit();
+    }
+    if (next != null) next.passFinished(stats);
+  }
+}
@@ -0,0 +1,39 @@
+package jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for one move of Fiduccia Mattheyses or one swap of
+ * Kernighan Lin. There is one per move, so it is off unless a recording
+ * enables it
+ *
+ */
+
+@Name("graphpartitioning.Move")
+@Label("Partitioning Move")
+@Category("Graph Partitioning")
+@Description("One move or swap within a refinement pass, with its gain and the cut cost after it")
+@Enabled(false)
+@StackTrace(false)
+public class MoveEvent extends jdk.jfr.Event {
+
+  @Label("Algorithm")
+  String algorithm;
+
+  @Label("Pass")
+  int pass;
+
+  @Label("Move")
+  int move;
+
+  @Label("Gain")
+  long gain;
+
+  @Label("Cut Cost")
+  long cutCost;
+}
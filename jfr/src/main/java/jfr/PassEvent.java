@@ -0,0 +1,66 @@
+package jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import algorithms.PassStats;
+
+/**
+ * Flight Recorder event for one pass of Kernighan Lin or Fiduccia Mattheyses,
+ * or one sweep of label propagation, carrying its PassStats
+ *
+ */
+
+@Name("graphpartitioning.Pass")
+@Label("Partitioning Pass")
+@Category("Graph Partitioning")
+@Description("One refinement pass: cut cost before and after, moves made and undone, time on gains and on moves")
+@StackTrace(false)
+public class PassEvent extends jdk.jfr.Event {
+
+  @Label("Algorithm")
+  String algorithm;
+
+  @Label("Pass")
+  int pass;
+
+  @Label("Cut Before")
+  long cutBefore;
+
+  @Label("Cut After")
+  long cutAfter;
+
+  @Label("Moves")
+  int moves;
+
+  @Label("Best Prefix")
+  @Description("Index of the last move kept, -1 if none was kept or the pass keeps every move")
+  int bestPrefix;
+
+  @Label("Moves Rolled Back")
+  int movesRolledBack;
+
+  @Label("Gain Time")
+  @Timespan(Timespan.NANOSECONDS)
+  long gainTime;
+
+  @Label("Move Time")
+  @Timespan(Timespan.NANOSECONDS)
+  long moveTime;
+
+  void set(PassStats stats) {
+    algorithm = stats.getAlgorithm();
+    pass = stats.getPass();
+    cutBefore = stats.getCutBefore();
+    cutAfter = stats.getCutAfter();
+    moves = stats.getMoves();
+    bestPrefix = stats.getBestPrefix();
+    movesRolledBack = stats.getMovesRolledBack();
+    gainTime = stats.getGainNanos();
+    moveTime = stats.getMoveNanos();
+  }
+}
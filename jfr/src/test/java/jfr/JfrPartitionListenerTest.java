@@ -0,0 +1,64 @@
+package jfr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Test;
+
+import algorithms.FiducciaMattheysesAlgorithm;
+import algorithms.PassCounters;
+import algorithms.RefinementOptions;
+import graph.CompactGraph;
+import graph.GraphGenerator;
+
+/**
+ * Records a Fiduccia Mattheyses run and checks that it left one pass event
+ * per pass and one move event per move, as counted by the chained PassCounters
+ */
+public class JfrPartitionListenerTest {
+
+  @Test
+  public void recordsPassesAndMoves() throws IOException {
+    CompactGraph g = GraphGenerator.randomGeometric(2000, 0.03, 1);
+    PassCounters counters = new PassCounters();
+    Path file = Files.createTempFile("partition", ".jfr");
+    try {
+      Recording recording = new Recording();
+      recording.enable(PassEvent.class);
+      recording.enable(MoveEvent.class);
+      recording.start();
+      FiducciaMattheysesAlgorithm.process(g, null, new RefinementOptions()
+          .setListener(new JfrPartitionListener(counters)));
+      recording.stop();
+      recording.dump(file);
+      recording.close();
+
+      List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+      long passes = 0, moves = 0;
+      for (RecordedEvent event : events) {
+        String name = event.getEventType().getName();
+        if (name.equals("graphpartitioning.Pass")) {
+          passes++;
+          assertEquals("FiducciaMattheyses", event.getString("algorithm"));
+          assertTrue(event.getLong("cutAfter") <= event.getLong("cutBefore"));
+        } else if (name.equals("graphpartitioning.Move")) {
+          moves++;
+        }
+      }
+      assertTrue(counters.getPasses() > 0);
+      assertEquals(counters.getPasses(), passes);
+      assertEquals(counters.getMoves(), moves);
+    } finally {
+      Files.delete(file);
+    }
+  }
+}
@@ -0,0 +1,17 @@
+package algorithms;
+
+/**
+ * Lets another thread stop a running partitioner, which then returns the
+ * best partition it has found so far. Set with RefinementOptions.setCancellation,
+ * a token may be shared by any number of runs and cancels all of them.
+ *
+ */
+
+public final class CancellationToken {
+
+  private volatile boolean cancelled;
+
+  /** Asks every run holding this token to stop after its current move **/
+  public void cancel() { cancelled = true; }
+  public boolean isCancelled() { return cancelled; }
+}
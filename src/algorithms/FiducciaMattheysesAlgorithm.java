@@ -1,14 +1,12 @@
 package algorithms;	
 
-import java.util.HashMap;
-import java.util.LinkedList;
-
-import graph.Edge;
+import graph.CompactGraph;
 import graph.Graph;
-import graph.Vertex;
+import graph.IntGraph;
 
 /**
  * An implentation of the Fiduccia Mattheyses Algorithm
+ * All state is kept per instance, so several instances may run at once on the same graph
  * @author Vanesa Georgieva
  *
  */
@@ -17,140 +15,283 @@ public class FiducciaMattheysesAlgorithm {
   
   /** Performs FiducciaMattheyses on the given graph **/
   public static FiducciaMattheysesAlgorithm process(Graph g) {
-    return new FiducciaMattheysesAlgorithm(g);
+    return process(g, new RefinementOptions());
+  }
+
+  /** Performs FiducciaMattheyses on the given graph with the given options **/
+  public static FiducciaMattheysesAlgorithm process(Graph g, RefinementOptions options) {
+    return new FiducciaMattheysesAlgorithm(g, CompactGraph.fromGraph(g), null, options);
+  }
+
+  /** Performs FiducciaMattheyses on the given compact graph **/
+  public static FiducciaMattheysesAlgorithm process(IntGraph g) {
+    return process(g, null, new RefinementOptions());
+  }
+
+  /** Performs FiducciaMattheyses on the given compact graph, aiming for
+   *  fractionA of the total vertex weight in A and the rest in B **/
+  public static FiducciaMattheysesAlgorithm process(IntGraph g, double fractionA) {
+    return process(g, null, new RefinementOptions().setFractionA(fractionA));
+  }
+
+  /** Refines the given partition (0 for A, 1 for B per vertex) of the compact graph **/
+  public static FiducciaMattheysesAlgorithm process(IntGraph g, int[] partition) {
+    return process(g, partition, new RefinementOptions());
+  }
+
+  /** Refines the given partition of the compact graph towards fractionA of the weight in A **/
+  public static FiducciaMattheysesAlgorithm process(IntGraph g, int[] partition, double fractionA) {
+    return process(g, partition, new RefinementOptions().setFractionA(fractionA));
+  }
+
+  /** Refines the given partition of the compact graph with the given options,
+   *  a null partition means starting from a split by vertex order **/
+  public static FiducciaMattheysesAlgorithm process(IntGraph g, int[] partition, RefinementOptions options) {
+    return new FiducciaMattheysesAlgorithm(null, g, partition, options);
+  }
+
+  /** Refines state in place, moving only the first regionSize vertices of region, as
+   *  PartitionSession does around the vertices changed since its last refresh. The
+   *  buckets and the moves buffer are the caller's, to be reused from run to run: the
+   *  buckets must hold every vertex id of g and gains up to the total weight of the
+   *  edges of any region vertex, moves at least regionSize vertices. cut is the cut
+   *  cost of state, and minVertexWeight the weight of the lightest region vertex **/
+  static FiducciaMattheysesAlgorithm refine(IntGraph g, PartitionState state, long cut,
+      int[] region, int regionSize, GainBuckets[] buckets, int[] moves,
+      long[] maxSideWeight, int minVertexWeight, RefinementOptions options) {
+    return new FiducciaMattheysesAlgorithm(g, state, cut, region, regionSize, buckets, moves,
+        maxSideWeight, minVertexWeight, options);
   }
 
   
-  private static VertexGroup A;
-  private static VertexGroup B;
-  public VertexGroup getGroupA() { return A; }
-  public VertexGroup getGroupB() { return B; }
+  // sides, side weights and locked vertices
+  final private PartitionState state;
+  public VertexGroup getGroupA() { return state.getGroup(graph, 0); }
+  public VertexGroup getGroupB() { return state.getGroup(graph, 1); }
+  public int[] getPartition() { return state.toArray(); }
   
   final private Graph graph;
+  /** The graph given to process, or null when a compact graph was given **/
   public Graph getGraph() { return graph; }
-  final private int partitionSize;
-  private VertexGroup unSwappedA;
-  private VertexGroup unSwappedB;
-  // vertex group with all unlocked vertices
-  private static  VertexGroup unLockedVertices;
+  final private IntGraph intGraph;
+  public IntGraph getIntGraph() { return intGraph; }
+  // heaviest a side may become by a move, see RefinementOptions.getMaxSideWeight
+  final private long[] maxSideWeight = new long[2];
+  private int minVertexWeight = Integer.MAX_VALUE;
+  // cut cost of the current split, kept up to date move by move
+  private long cut;
+  final private RefinementOptions options;
+  // gains of the unlocked vertices of A and of B
+  private GainBuckets[] buckets;
+  // vertices in the order they were moved during the current pass
+  private int[] moves;
+  // set once options.isStopped(), no move or pass follows
+  private boolean stopped;
+  // the only vertices that may move, or null for all of them
+  final private int[] region;
+  final private int regionSize;
   
-  private FiducciaMattheysesAlgorithm(Graph g) {
+  private FiducciaMattheysesAlgorithm(Graph g, IntGraph ig, int[] partition, RefinementOptions options) {
 	  
 	    this.graph = g;
-	    this.partitionSize = g.getVertices().size() / 2;
-	    A = new VertexGroup();
-	    B = new VertexGroup();
-	    unLockedVertices = new VertexGroup();
-	    // Split vertices into A and B
-	    int i = 0;
-	    // if 2 parts are equal 
-	    if((g.getVertices().size() % 2) == 0){
-		    for (Vertex v : g.getVertices()) {
-		      (++i >= partitionSize ? B : A).add(v);
-		      unLockedVertices.add(v);
-		    }
-		// if 2 parts are not equal
-		} else {
-		    for (Vertex v : g.getVertices()) {
-		  	  (++i > partitionSize ? B : A).add(v);
-		  	  unLockedVertices.add(v);
-		  	}
-	    	
+	    this.intGraph = ig;
+	    this.options = options;
+	    this.region = null;
+	    this.regionSize = 0;
+	    int n = ig.getVertexCount();
+	    double fractionA = options.getFractionA();
+	    long totalWeight = 0;
+	    int maxVertexWeight = 0;
+	    for (int v = 0; v < n; v++) {
+	      int w = ig.getVertexWeight(v);
+	      totalWeight += w;
+	      maxVertexWeight = Math.max(maxVertexWeight, w);
+	      minVertexWeight = Math.min(minVertexWeight, w);
+	    }
+	    long targetA = (long) (totalWeight * fractionA);
+	    maxSideWeight[0] = options.getMaxSideWeight(0, totalWeight, minVertexWeight, maxVertexWeight);
+	    maxSideWeight[1] = options.getMaxSideWeight(1, totalWeight, minVertexWeight, maxVertexWeight);
+	    if (partition == null && options.isSpectralStart() && n > 0)
+	      partition = SpectralBisection.process(ig, options).getPartition();
+	    // Split vertices into A and B, if 2 parts are not equal B gets the extra weight
+	    if (partition == null) {
+	      partition = new int[n];
+	      long weightA = 0;
+	      for (int v = 0; v < n; v++) {
+	        if (weightA + ig.getVertexWeight(v) <= targetA) weightA += ig.getVertexWeight(v);
+	        else partition[v] = 1;
+	      }
+	    }
+	    state = new PartitionState(ig, partition);
+	    if (options.isBoundaryOnly()) state.trackBoundary();
+	    // a gain lies within the sum of the absolute weights of its vertex's edges, negative ones included
+	    int maxGain = 0;
+	    for (int v = 0; v < n; v++) {
+	      int degree = 0;
+	      for (int i = 0; i < ig.getDegree(v); i++)
+	        degree += Math.abs(ig.getNeighborWeight(v, i));
+	      maxGain = Math.max(maxGain, degree);
 	    }
-	    unSwappedA = new VertexGroup(A);
-	    unSwappedB = new VertexGroup(B);
-	    doAllSwaps(unSwappedA, unSwappedB);
+	    buckets = new GainBuckets[] { new GainBuckets(n, maxGain), new GainBuckets(n, maxGain) };
+	    moves = new int[n];
+	    cut = state.computeCutCost();
+	    doAllPasses();
+  }
+
+  private FiducciaMattheysesAlgorithm(IntGraph ig, PartitionState state, long cut,
+      int[] region, int regionSize, GainBuckets[] buckets, int[] moves,
+      long[] maxSideWeight, int minVertexWeight, RefinementOptions options) {
+    this.graph = null;
+    this.intGraph = ig;
+    this.state = state;
+    this.cut = cut;
+    this.region = region;
+    this.regionSize = regionSize;
+    this.buckets = buckets;
+    this.moves = moves;
+    this.maxSideWeight[0] = maxSideWeight[0];
+    this.maxSideWeight[1] = maxSideWeight[1];
+    this.minVertexWeight = minVertexWeight;
+    this.options = options;
+    doAllPasses();
+  }
+
+  /** Repeats passes until one does not lower the cut cost **/
+  private void doAllPasses() {
+    for (int pass = 0; pass < options.getMaxPasses(); pass++) {
+      long before = cut;
+      doAllSwaps(pass);
+      if (cut >= before || stopped) break;
+    }
   }
   
   
-  /** Performs |V|/2 swaps and chooses the one with least cut cost one 
-	 * @param unSwappedA 
-	 * @param unSwappedB
-	 *
-	 **/
-  private void doAllSwaps(VertexGroup unSwappedA, VertexGroup unSwappedB) {
-
-    LinkedList<Edge> linkedListEdges = new LinkedList<Edge>();
-    double minCost = Double.POSITIVE_INFINITY;
+  /** Moves every vertex at most once, always taking the unlocked vertex with
+   *  highest gain, and keeps the prefix of moves with least cut cost.
+   *  Gains live in one bucket list per side and only the neighbours of a moved
+   *  vertex are updated, so a pass costs O(|E|) with equal vertex weights. With
+   *  uneven ones, picking a move may also walk past vertices too heavy for the
+   *  other side, up to every candidate of a side per move. The pass gives up after
+   *  options.getMaxNonImprovingMoves() moves without a new best cut.
+   *  In boundary only mode a pass starts from the boundary vertices and
+   *  others join as their neighbours move. Given a region, a pass starts from
+   *  its vertices and no other joins. Once the options say to stop, the
+   *  pass ends where it is and still keeps its best prefix. **/
+  private void doAllSwaps(int pass) {
+
+    PartitionListener listener = options.getListener();
+    long start = (listener != null) ? System.nanoTime() : 0;
+    long before = cut;
+    int n = state.getVertexCount();
+    buckets[0].clear();
+    buckets[1].clear();
+    if (region != null) {
+      // only region vertices were locked, so unlocking them is enough
+      for (int i = 0; i < regionSize; i++) {
+        int v = region[i];
+        state.unlock(v);
+        buckets[state.getSide(v)].insert(v, getVertexCost(v));
+      }
+    } else if (options.isBoundaryOnly()) {
+      state.unlockAll();
+      for (int i = 0; i < state.getBoundarySize(); i++) {
+        int v = state.getBoundaryVertex(i);
+        buckets[state.getSide(v)].insert(v, getVertexCost(v));
+      }
+    } else {
+      state.unlockAll();
+      for (int v = 0; v < n; v++) {
+        buckets[state.getSide(v)].insert(v, getVertexCost(v));
+      }
+    }
+
+    long filled = (listener != null) ? System.nanoTime() : 0;
+
+    int moveCount = 0;
+    long minCost = cut;
     int minId = -1;
-    for (int i = 0; i < partitionSize; i++) {
-      double cost = doSingleSwap(linkedListEdges);
-      if (cost < minCost) {
-        minCost = cost; 
-        minId = i; 
+    int moved;
+    long last = cut;
+    while (!(stopped = options.isStopped()) && (moved = doSingleSwap()) >= 0) {
+      moves[moveCount] = moved;
+      if (listener != null) listener.moveMade("FiducciaMattheyses", pass, moveCount, last - cut, cut);
+      last = cut;
+      if (cut < minCost) {
+        minCost = cut; 
+        minId = moveCount; 
       }
+      moveCount++;
+      if (moveCount - 1 - minId >= options.getMaxNonImprovingMoves()) break;
     }
     
-    // Unwind swaps
-    while (linkedListEdges.size() > minId) {   	
-      Edge pair = linkedListEdges.pop();
-      // swaps vertices from the max pair with highest gain
-	      double costA = getVertexCost(pair.one);
-	      double costB = getVertexCost(pair.two);  
-	      if(costA<costB && unSwappedA.contains(pair.one)){    
-	    	  if(A.contains(pair.one)){
-	    		  swapVertices(A, pair.one, B);
-	    	  }else swapVertices(B, pair.one, A);
-	    	  unSwappedA.remove(pair.one);
-	      }
-	      else if( unLockedVertices.contains(pair.two)) {
-	      	  if(A.contains(pair.two)){
-	      		swapVertices(A, pair.two, B);
-	      	  }else swapVertices(B, pair.two, A);
-	      	  unSwappedA.remove(pair.two);
-	      }
+    // Unwind moves made after the best prefix
+    for (int i = moveCount - 1; i > minId; i--) {
+      state.move(moves[i]);
     }
+    cut = minCost;
+    if (listener != null)
+      listener.passFinished(new PassStats("FiducciaMattheyses", pass, before, cut, moveCount, minId,
+          filled - start, System.nanoTime() - filled));
  }
   
-  /** Chooses the least cost swap and performs it depending on the vertex gain**/
-  private double doSingleSwap(LinkedList<Edge> linkedListEdges) {
-
-    Edge maxPair = null;
-    double maxCost = Double.NEGATIVE_INFINITY;    
-    for (Vertex v_a : unSwappedA) {
-      for (Vertex v_b : unSwappedB) {
-        double costA = getVertexCost(v_a);
-        if (costA > maxCost && unLockedVertices.contains(v_a) || unLockedVertices.contains(v_b)) {
-          maxPair = new Edge(v_a, v_b);
-          maxCost = costA;         
-        }
-      }
-    }
-    double costA = getVertexCost(maxPair.one);
-    double costB = getVertexCost(maxPair.two);
-    if(costA<costB && unLockedVertices.contains(maxPair.one)){
-    	if(A.contains(maxPair.one)){
-    		swapVertices(A, maxPair.one, B);
-    	}else swapVertices(B, maxPair.one, A);
-    	unSwappedA.remove(maxPair.one);
+  /** Chooses the unlocked vertex with highest gain that keeps the balance, moves it
+   *  and updates the gains of its unlocked neighbours
+   *  @return the moved vertex, or -1 if no vertex can be moved **/
+  private int doSingleSwap() {
+
+    int maxVertex = -1;
+    for (int s = 0; s < 2; s++) {
+      if (state.getSideWeight(1 - s) + minVertexWeight > maxSideWeight[1 - s]) continue;
+      int v = buckets[s].peekMax();
+      // with uneven vertex weights a lighter vertex may still fit
+      while (v >= 0 && !canMove(v)) v = buckets[s].nextAfter(v);
+      if (v < 0) continue;
+      if (maxVertex < 0 || buckets[s].getGain(v) > buckets[state.getSide(maxVertex)].getGain(maxVertex))
+        maxVertex = v;
     }
-    else if(unLockedVertices.contains(maxPair.two)){
-    	if(A.contains(maxPair.two)){
-    		swapVertices(A, maxPair.two, B);
-    	}else swapVertices(B, maxPair.two, A);
-    	unSwappedA.remove(maxPair.two);
+    if (maxVertex < 0) return -1;
+
+    int from = state.getSide(maxVertex);
+    buckets[from].remove(maxVertex);
+    cut -= buckets[from].getGain(maxVertex);
+    state.lock(maxVertex);
+    state.move(maxVertex);
+    for (int i = 0; i < intGraph.getDegree(maxVertex); i++) {
+      int v2 = intGraph.getNeighbor(maxVertex, i);
+      if (state.isLocked(v2)) continue;
+      int w = intGraph.getNeighborWeight(maxVertex, i);
+      // an internal edge of v2 became external or the opposite
+      int s2 = state.getSide(v2);
+      if (buckets[s2].contains(v2))
+        buckets[s2].add(v2, (s2 == from) ? 2 * w : -2 * w);
+      else if (region == null) // v2 just reached the boundary
+        buckets[s2].insert(v2, getVertexCost(v2));
     }
-    
-    linkedListEdges.push(maxPair);
-    return getCutCost();
+    return maxVertex;
+  }
+
+  /** A move is legal while the receiving side stays within its maximum weight,
+   *  options.getMaxSideWeight() for that side **/
+  private boolean canMove(int v) {
+    int to = 1 - state.getSide(v);
+    return state.getSideWeight(to) + intGraph.getVertexWeight(v) <= maxSideWeight[to];
   }
 
   /** Returns gain for the current vertex.
    *  When moving a vertex from within group A, all internal edges become external 
    *  edges and vice versa. **/
-  private double getVertexCost(Vertex v) {
-//	  the moving force FS(c) is the number of nets connected 
-////  to c but not connected to any other cells within cs partition, 
+  private int getVertexCost(int v) {
+//	  the "moving force" FS(c) is the number of nets connected 
+////  to c but not connected to any other cells within c's partition, 
 ////  i.e., cut nets that connect only to c, and 
-////  the retention force TE(c) is the number of uncut nets connected to c.
-    double cost = 0;
-
-    boolean v1isInA = A.contains(v);
-    for (Vertex v2 : graph.getVertices()) {      
-      boolean v2isInA = A.contains(v2);
-      Edge edge = graph.findConnected(v, v2);
-      double edge_cost = (edge != null) ? edge.weight : 0;
-      if (v1isInA != v2isInA) // external
+////  the "retention force" TE(c) is the number of uncut nets connected to c.
+    int cost = 0;
+    int s = state.getSide(v);
+
+    for (int i = 0; i < intGraph.getDegree(v); i++) {      
+      int v2 = intGraph.getNeighbor(v, i);
+      int edge_cost = intGraph.getNeighborWeight(v, i);
+      if (s != state.getSide(v2)) // external
         cost += edge_cost;  // moving force
       else
         cost -= edge_cost; // retention force
@@ -160,22 +301,12 @@ public class FiducciaMattheysesAlgorithm {
   
   /** Returns the sum of the costs of all edges between A and B **/
   public double getCutCost() {
-    double cost = 0;
-    for (Edge edge : graph.getEdges()) {     
-      boolean firstInA = A.contains(edge.one);
-      boolean secondInA= A.contains(edge.two);      
-      if (firstInA != secondInA) // external
-        cost += edge.weight;
-      }
-    return cost;
+    return cut;
+  }
+
+  /** Whether the deadline or cancellation of the options stopped the run early.
+   *  The partition and cut cost are then the best of the work done **/
+  public boolean isStopped() {
+    return stopped;
   }
-  
-  /** linkedListEdges swaps v in group x **/
-  private static void swapVertices(VertexGroup a, Vertex va, VertexGroup b) {
-    if (b.contains(va)) throw new RuntimeException("Invalid swap");
-       a.remove(va); 
-       b.add(va); 
-       // locked vertex
-       unLockedVertices.remove(va);
-    }
 }
\ No newline at end of file
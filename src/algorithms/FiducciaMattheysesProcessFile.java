@@ -1,52 +1,29 @@
 package algorithms;
 
-import java.io.BufferedReader;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 
-import graph.Graph;
-import graph.Vertex;
+import graph.GraphReader;
+import graph.IntGraph;
 
 public class FiducciaMattheysesProcessFile {
 	
-	private static BufferedReader br;
-	
-	public static void runKerninghanLin(){
+	/** Reads the graph at path, see GraphReader.read for the formats, and prints its two clusters **/
+	public static void runKerninghanLin(String path){
+		runKerninghanLin(path, PartitionCache.getShared());
+	}
+
+	/** Like runKerninghanLin(path), answering from cache when the same graph was partitioned before **/
+	public static void runKerninghanLin(String path, PartitionCache cache){
 
-	    Graph graph = new Graph();
-	    //initialize some vertices and add them to the graph
-	    
 	    try {
-	    	br = new BufferedReader(new FileReader("D:\\workspace\\Graph_Clustering\\src\\algorithms\\graph.txt"));
-	    	String line = br.readLine();
-	    	if (line != null) {
-	    		String[] verticesNames = line.split(" ");
-	    		Vertex[] vertices = new Vertex[verticesNames.length];
-	    		for(int i = 0; i < vertices.length; i++){
-	    			vertices[i] = new Vertex("" + i);
-	    			graph.addVertex(vertices[i], true);
-	    			}
-	    		int currentVertex = 0;
-	    		while(line != null) {
-	    			String[] tokens = line.split(" ");
-	    			for(int i = 0; i < tokens.length; i++) {
-	    				int currentToken = Integer.parseInt(tokens[i]);	
-	    				if(currentToken == 1){
-	    					graph.addEdge(vertices[currentVertex], vertices[i]);
-	    					}
-	    				} 
-	    			currentVertex++;
-	    			line = br.readLine();
-	    			}
-	    		FiducciaMattheysesAlgorithm k = FiducciaMattheysesAlgorithm.process(graph);	
-	    		System.out.println("Fiduccia Mattheyses Algorithm");
-				System.out.println("Cluster 1");
-				System.out.println(k.getGroupA());
-				System.out.println("Cluster 2");
-				System.out.println(k.getGroupB());
-				}
-	    	br.close();
+	    	IntGraph graph = GraphReader.read(path);
+	    	int[] partition = partition(graph, cache);
+	    	System.out.println("Fiduccia Mattheyses Algorithm");
+			System.out.println("Cluster 1");
+			System.out.println(PartitionState.group(graph, null, partition, 0));
+			System.out.println("Cluster 2");
+			System.out.println(PartitionState.group(graph, null, partition, 1));
 	    	
 		    } catch (FileNotFoundException ex) {
 		    	ex.printStackTrace();
@@ -56,4 +33,18 @@ public class FiducciaMattheysesProcessFile {
 		    	System.out.println("Error: " + e);
 		    }
 	    }
+
+	/** Returns the cached partition of graph, or runs Fiduccia Mattheyses and caches the result.
+	 *  On a near miss the moves start from the partition of the similar graph **/
+	static int[] partition(IntGraph graph, PartitionCache cache){
+		RefinementOptions options = new RefinementOptions();
+		PartitionCache.Key key = PartitionCache.key(graph, "FiducciaMattheyses", options);
+		int[] partition = cache.get(key);
+		if (partition == null) {
+			FiducciaMattheysesAlgorithm fm = FiducciaMattheysesAlgorithm.process(graph, cache.getWarmStart(key, graph, options), options);
+			partition = fm.getPartition();
+			if (!fm.isStopped()) cache.put(key, partition);
+		}
+		return partition;
+	}
 	}
@@ -0,0 +1,95 @@
+package algorithms;
+
+import java.util.Arrays;
+
+/**
+ * Bucket list of vertices indexed by gain, as used by Fiduccia Mattheyses.
+ * Gains lie in -maxGain .. +maxGain, every bucket is a doubly linked list
+ * threaded through per vertex arrays, so insert, remove, update and
+ * finding the vertex with the highest gain are all constant time
+ * (amortised for the last one).
+ */
+class GainBuckets {
+
+  final private int maxGain;
+  // first vertex of every bucket, -1 for an empty bucket
+  final private int[] head;
+  final private int[] next, prev;
+  final private int[] gain;
+  final private boolean[] present;
+  // no bucket above top is occupied
+  private int top = -1;
+  private int size;
+
+  GainBuckets(int vertexCount, int maxGain) {
+    this.maxGain = maxGain;
+    head = new int[2 * maxGain + 1];
+    Arrays.fill(head, -1);
+    next = new int[vertexCount];
+    prev = new int[vertexCount];
+    gain = new int[vertexCount];
+    present = new boolean[vertexCount];
+  }
+
+  /** Adds v with the given gain **/
+  void insert(int v, int g) {
+    if (g > maxGain || g < -maxGain) throw new IllegalArgumentException("Gain out of range: " + g);
+    int b = g + maxGain;
+    gain[v] = g;
+    present[v] = true;
+    prev[v] = -1;
+    next[v] = head[b];
+    if (head[b] >= 0) prev[head[b]] = v;
+    head[b] = v;
+    if (b > top) top = b;
+    size++;
+  }
+
+  /** Removes every vertex, in time proportional to the vertices present
+   *  and the range of gains rather than to the vertex count **/
+  void clear() {
+    for (int b = top; b >= 0; b--) {
+      for (int v = head[b]; v >= 0; v = next[v]) present[v] = false;
+      head[b] = -1;
+    }
+    top = -1;
+    size = 0;
+  }
+
+  /** Removes v **/
+  void remove(int v) {
+    int b = gain[v] + maxGain;
+    if (prev[v] >= 0) next[prev[v]] = next[v];
+    else head[b] = next[v];
+    if (next[v] >= 0) prev[next[v]] = prev[v];
+    present[v] = false;
+    size--;
+  }
+
+  /** Changes the gain of v by delta **/
+  void add(int v, int delta) {
+    int g = gain[v] + delta;
+    remove(v);
+    insert(v, g);
+  }
+
+  /** Returns the vertex with the highest gain, or -1 if empty **/
+  int peekMax() {
+    while (top >= 0 && head[top] < 0) top--;
+    return (top >= 0) ? head[top] : -1;
+  }
+
+  /** Returns the vertex after v in the order of decreasing gain, or -1 **/
+  int nextAfter(int v) {
+    if (next[v] >= 0) return next[v];
+    for (int b = gain[v] + maxGain - 1; b >= 0; b--) {
+      if (head[b] >= 0) return head[b];
+    }
+    return -1;
+  }
+
+  boolean contains(int v) { return present[v]; }
+  int getGain(int v) { return gain[v]; }
+  int size() { return size; }
+  boolean isEmpty() { return size == 0; }
+}
@@ -0,0 +1,269 @@
+package algorithms;
+
+import java.util.Arrays;
+
+import graph.Hypergraph;
+import graph.Vertex;
+
+/**
+ * Fiduccia Mattheyses on a hypergraph, as it was first given for circuit
+ * netlists. A net is cut when it has pins on both sides and the cut cost is
+ * the weight of the cut nets, so a net of many pins is never expanded into
+ * a clique of edges. The number of pins of every net on each side is kept,
+ * and moving a vertex only changes the gains of pins of its critical nets,
+ * those with no or one pin on a side, so a move costs O(pins of its nets).
+ *
+ */
+
+public class HypergraphFMAlgorithm {
+
+  /** Performs Fiduccia Mattheyses on the given hypergraph **/
+  public static HypergraphFMAlgorithm process(Hypergraph h) {
+    return process(h, null, new RefinementOptions());
+  }
+
+  /** Performs Fiduccia Mattheyses on the given hypergraph with the given options **/
+  public static HypergraphFMAlgorithm process(Hypergraph h, RefinementOptions options) {
+    return process(h, null, options);
+  }
+
+  /** Refines the given partition (0 for A, 1 for B per vertex) of the hypergraph,
+   *  a null partition means starting from a split by vertex order **/
+  public static HypergraphFMAlgorithm process(Hypergraph h, int[] partition, RefinementOptions options) {
+    return new HypergraphFMAlgorithm(h, partition, options);
+  }
+
+  final private Hypergraph hypergraph;
+  public Hypergraph getHypergraph() { return hypergraph; }
+  final private RefinementOptions options;
+  // side of every vertex, 0 for A and 1 for B
+  final private int[] side;
+  final private long[] sideWeight = new long[2];
+  // pins of net e on side s are pinCount[2 * e + s]
+  final private int[] pinCount;
+  // locked vertices have already been moved in this pass
+  final private boolean[] locked;
+  // heaviest a side may become by a move, see RefinementOptions.getMaxSideWeight
+  final private long[] maxSideWeight = new long[2];
+  private int minVertexWeight = Integer.MAX_VALUE;
+  // weight of the cut nets, kept up to date move by move
+  private long cut;
+  // gains of the unlocked vertices of A and of B
+  final private GainBuckets[] buckets;
+  // vertices in the order they were moved during the current pass
+  final private int[] moves;
+  public int[] getPartition() { return side.clone(); }
+
+  private HypergraphFMAlgorithm(Hypergraph h, int[] partition, RefinementOptions options) {
+    this.hypergraph = h;
+    this.options = options;
+    int n = h.getVertexCount();
+    long totalWeight = 0;
+    int maxVertexWeight = 0;
+    for (int v = 0; v < n; v++) {
+      int w = h.getVertexWeight(v);
+      totalWeight += w;
+      maxVertexWeight = Math.max(maxVertexWeight, w);
+      minVertexWeight = Math.min(minVertexWeight, w);
+    }
+    maxSideWeight[0] = options.getMaxSideWeight(0, totalWeight, minVertexWeight, maxVertexWeight);
+    maxSideWeight[1] = options.getMaxSideWeight(1, totalWeight, minVertexWeight, maxVertexWeight);
+    // Split vertices into A and B, if 2 parts are not equal B gets the extra weight
+    if (partition == null) {
+      partition = new int[n];
+      long targetA = (long) (totalWeight * options.getFractionA());
+      long weightA = 0;
+      for (int v = 0; v < n; v++) {
+        if (weightA + h.getVertexWeight(v) <= targetA) weightA += h.getVertexWeight(v);
+        else partition[v] = 1;
+      }
+    }
+    if (partition.length != n)
+      throw new IllegalArgumentException("Partition size must match the number of vertices");
+    side = partition.clone();
+    for (int v = 0; v < n; v++) {
+      if ((side[v] & ~1) != 0)
+        throw new IllegalArgumentException("Vertex " + v + " is on side " + side[v]);
+      sideWeight[side[v]] += h.getVertexWeight(v);
+    }
+    pinCount = new int[2 * h.getNetCount()];
+    for (int e = 0; e < h.getNetCount(); e++) {
+      for (int i = 0; i < h.getNetSize(e); i++) pinCount[2 * e + side[h.getPin(e, i)]]++;
+      if (pinCount[2 * e] > 0 && pinCount[2 * e + 1] > 0) cut += h.getNetWeight(e);
+    }
+    int maxGain = 0;
+    for (int v = 0; v < n; v++) {
+      int degree = 0;
+      for (int i = 0; i < h.getDegree(v); i++) degree += Math.abs(h.getNetWeight(h.getNet(v, i)));
+      maxGain = Math.max(maxGain, degree);
+    }
+    locked = new boolean[n];
+    buckets = new GainBuckets[] { new GainBuckets(n, maxGain), new GainBuckets(n, maxGain) };
+    moves = new int[n];
+    doAllPasses();
+  }
+
+  /** Repeats passes until one does not lower the cut cost **/
+  private void doAllPasses() {
+    for (int pass = 0; pass < options.getMaxPasses(); pass++) {
+      long before = cut;
+      doAllMoves();
+      if (cut >= before) break;
+    }
+  }
+
+  /** Moves every vertex at most once, always taking the unlocked vertex with
+   *  highest gain, and keeps the prefix of moves with least cut cost.
+   *  In boundary only mode a pass starts from the pins of cut nets and
+   *  others join as their nets become cut **/
+  private void doAllMoves() {
+    int n = hypergraph.getVertexCount();
+    buckets[0].clear();
+    buckets[1].clear();
+    Arrays.fill(locked, false);
+    for (int v = 0; v < n; v++) {
+      if (!options.isBoundaryOnly() || isBoundary(v)) buckets[side[v]].insert(v, getVertexGain(v));
+    }
+
+    int moveCount = 0;
+    long minCost = cut;
+    int minId = -1;
+    int moved;
+    while ((moved = doSingleMove()) >= 0) {
+      moves[moveCount] = moved;
+      if (cut < minCost) {
+        minCost = cut;
+        minId = moveCount;
+      }
+      moveCount++;
+      if (moveCount - 1 - minId >= options.getMaxNonImprovingMoves()) break;
+    }
+
+    // Unwind moves made after the best prefix
+    for (int i = moveCount - 1; i > minId; i--) {
+      move(moves[i]);
+    }
+    cut = minCost;
+  }
+
+  /** Chooses the unlocked vertex with highest gain that keeps the balance, moves it
+   *  and updates the gains of the free pins of its critical nets
+   *  @return the moved vertex, or -1 if no vertex can be moved **/
+  private int doSingleMove() {
+    int maxVertex = -1;
+    for (int s = 0; s < 2; s++) {
+      if (sideWeight[1 - s] + minVertexWeight > maxSideWeight[1 - s]) continue;
+      int v = buckets[s].peekMax();
+      // with uneven vertex weights a lighter vertex may still fit
+      while (v >= 0 && sideWeight[1 - s] + hypergraph.getVertexWeight(v) > maxSideWeight[1 - s])
+        v = buckets[s].nextAfter(v);
+      if (v < 0) continue;
+      if (maxVertex < 0 || buckets[s].getGain(v) > buckets[side[maxVertex]].getGain(maxVertex))
+        maxVertex = v;
+    }
+    if (maxVertex < 0) return -1;
+
+    int from = side[maxVertex], to = 1 - from;
+    buckets[from].remove(maxVertex);
+    cut -= buckets[from].getGain(maxVertex);
+    locked[maxVertex] = true;
+    side[maxVertex] = to;
+    for (int i = 0; i < hypergraph.getDegree(maxVertex); i++) {
+      int e = hypergraph.getNet(maxVertex, i);
+      int w = hypergraph.getNetWeight(e);
+      // before the move: a net with no pin on the receiving side becomes cut,
+      // and one with a single pin there no longer depends on that pin
+      if (pinCount[2 * e + to] == 0) addToFreePins(e, maxVertex, w);
+      else if (pinCount[2 * e + to] == 1) addToOnlyPin(e, maxVertex, to, -w);
+      pinCount[2 * e + from]--;
+      pinCount[2 * e + to]++;
+      // after the move: a net left with no pin on the sending side is no longer
+      // cut, and one left with a single pin there is freed by moving that pin
+      if (pinCount[2 * e + from] == 0) addToFreePins(e, maxVertex, -w);
+      else if (pinCount[2 * e + from] == 1) addToOnlyPin(e, maxVertex, from, w);
+      if (options.isBoundaryOnly() && pinCount[2 * e + to] == 1) insertFreePins(e);
+    }
+    sideWeight[from] -= hypergraph.getVertexWeight(maxVertex);
+    sideWeight[to] += hypergraph.getVertexWeight(maxVertex);
+    return maxVertex;
+  }
+
+  /** Changes the gain of every free pin of net e but v by delta **/
+  private void addToFreePins(int e, int v, int delta) {
+    for (int i = 0; i < hypergraph.getNetSize(e); i++) {
+      int u = hypergraph.getPin(e, i);
+      if (u != v && buckets[side[u]].contains(u)) buckets[side[u]].add(u, delta);
+    }
+  }
+
+  /** Changes the gain of the single pin of net e but v on side s by delta, if it is free **/
+  private void addToOnlyPin(int e, int v, int s, int delta) {
+    for (int i = 0; i < hypergraph.getNetSize(e); i++) {
+      int u = hypergraph.getPin(e, i);
+      if (u != v && side[u] == s) {
+        if (buckets[s].contains(u)) buckets[s].add(u, delta);
+        return;
+      }
+    }
+  }
+
+  /** Adds the free pins of net e that are in no bucket yet, as e just became cut **/
+  private void insertFreePins(int e) {
+    for (int i = 0; i < hypergraph.getNetSize(e); i++) {
+      int u = hypergraph.getPin(e, i);
+      if (!locked[u] && !buckets[side[u]].contains(u)) buckets[side[u]].insert(u, getVertexGain(u));
+    }
+  }
+
+  /** Moves v to the other side, keeping the pin counts and side weights **/
+  private void move(int v) {
+    int from = side[v], to = 1 - from;
+    for (int i = 0; i < hypergraph.getDegree(v); i++) {
+      int e = hypergraph.getNet(v, i);
+      pinCount[2 * e + from]--;
+      pinCount[2 * e + to]++;
+    }
+    side[v] = to;
+    sideWeight[from] -= hypergraph.getVertexWeight(v);
+    sideWeight[to] += hypergraph.getVertexWeight(v);
+  }
+
+  /** Whether v is a pin of a cut net **/
+  private boolean isBoundary(int v) {
+    for (int i = 0; i < hypergraph.getDegree(v); i++) {
+      int e = hypergraph.getNet(v, i);
+      if (pinCount[2 * e] > 0 && pinCount[2 * e + 1] > 0) return true;
+    }
+    return false;
+  }
+
+  /** Returns the cut cost saved by moving v to the other side: the weight of its
+   *  nets where it is the only pin on its side, less that of its nets with no
+   *  pin on the other side **/
+  private int getVertexGain(int v) {
+    int gain = 0;
+    int s = side[v];
+    for (int i = 0; i < hypergraph.getDegree(v); i++) {
+      int e = hypergraph.getNet(v, i);
+      if (pinCount[2 * e + s] == 1) gain += hypergraph.getNetWeight(e);
+      if (pinCount[2 * e + 1 - s] == 0) gain -= hypergraph.getNetWeight(e);
+    }
+    return gain;
+  }
+
+  /** Returns the sum of the weights of all nets with pins in both A and B **/
+  public double getCutCost() {
+    return cut;
+  }
+
+  public VertexGroup getGroupA() { return getGroup(0); }
+  public VertexGroup getGroupB() { return getGroup(1); }
+
+  private VertexGroup getGroup(int s) {
+    VertexGroup group = new VertexGroup();
+    for (int v = 0; v < side.length; v++) {
+      if (side[v] == s) group.add(new Vertex(hypergraph.getLabel(v), hypergraph.getVertexWeight(v)));
+    }
+    return group;
+  }
+}
@@ -1,14 +1,13 @@
 package algorithms;	
 
-import java.util.LinkedList;
-
-import graph.Edge;
+import graph.CompactGraph;
 import graph.Graph;
-import graph.Vertex;
+import graph.IntGraph;
 
 /**
  * Kernighan-Lin - splitting a graph into 
  * two groups where the weights of the edges between groups (cutting cost) is minimised
+ * All state is kept per instance, so several instances may run at once on the same graph
  * @author Vanesa Georgieva
  *
  */
@@ -17,128 +16,307 @@ public class KernighanLinAlgorithm {
   
   /** Performs KerninghanLin on the given graph **/
   public static KernighanLinAlgorithm process(Graph g) {
-    return new KernighanLinAlgorithm(g);
+    return process(g, new RefinementOptions());
+  }
+
+  /** Performs KerninghanLin on the given graph with the given options **/
+  public static KernighanLinAlgorithm process(Graph g, RefinementOptions options) {
+    return new KernighanLinAlgorithm(g, CompactGraph.fromGraph(g), null, options);
+  }
+
+  /** Performs KerninghanLin on the given compact graph **/
+  public static KernighanLinAlgorithm process(IntGraph g) {
+    return process(g, null, new RefinementOptions());
+  }
+
+  /** Refines the given partition (0 for A, 1 for B per vertex) of the compact graph **/
+  public static KernighanLinAlgorithm process(IntGraph g, int[] partition) {
+    return process(g, partition, new RefinementOptions());
+  }
+
+  /** Refines the given partition of the compact graph with the given options,
+   *  a null partition means starting from a split by vertex order with the fraction
+   *  of A of the vertex weight in A. A swap must keep both sides within their
+   *  maximum weight, or at least not make them heavier. **/
+  public static KernighanLinAlgorithm process(IntGraph g, int[] partition, RefinementOptions options) {
+    return new KernighanLinAlgorithm(null, g, partition, options);
   }
 
   
-  final private VertexGroup A, B;
-  final private VertexGroup unswappedA, unswappedB;
-  public VertexGroup getGroupA() { return A; }
-  public VertexGroup getGroupB() { return B; }
+  // sides of the vertices, a vertex is locked once swapped in this pass
+  final private PartitionState state;
+  // external minus internal cost of every vertex, valid where dPass[v] == pass
+  final private int[] dValue;
+  final private int[] dPass;
+  private int pass;
+  // D-values of the unswapped candidates of A and of B
+  final private GainBuckets[] buckets;
+  // whether a swap gains at most D(a) + D(b), which needs the edges between them to weigh 0 or more
+  final private boolean prune;
+  // vertices swapped during the current pass, in order
+  final private int[] swapsA, swapsB;
+  // weights of the edges from the current candidate, indexed by neighbour
+  final private int[] edgeTo;
+  private long cut;
+  public VertexGroup getGroupA() { return state.getGroup(graph, 0); }
+  public VertexGroup getGroupB() { return state.getGroup(graph, 1); }
+  public int[] getPartition() { return state.toArray(); }
   
   final private Graph graph;
+  /** The graph given to process, or null when a compact graph was given **/
   public Graph getGraph() { return graph; }
+  final private IntGraph intGraph;
+  public IntGraph getIntGraph() { return intGraph; }
   final private int partitionSize;
+  // heaviest a side may become by a swap, see RefinementOptions.getMaxSideWeight
+  final private long[] maxSideWeight = new long[2];
+  final private RefinementOptions options;
+  // for the listener: time spent filling the buckets in the current pass, gain of the last swap
+  private long gainNanos;
+  private long lastGain;
+  // set once options.isStopped(), no swap or pass follows
+  private boolean stopped;
   
   
-  private KernighanLinAlgorithm(Graph g) {
+  private KernighanLinAlgorithm(Graph g, IntGraph ig, int[] partition, RefinementOptions options) {
     this.graph = g;
-    this.partitionSize = g.getVertices().size() / 2;
-    if (g.getVertices().size() != partitionSize * 2) 
-      throw new RuntimeException("Size of vertices must be even");
-    
-    A = new VertexGroup();
-    B = new VertexGroup();
-    // Split vertices into A and B
-    int i = 0;
-    for (Vertex v : g.getVertices()) {
-      (++i > partitionSize ? B : A).add(v);
+    this.intGraph = ig;
+    this.options = options;
+    int n = ig.getVertexCount();
+    long totalWeight = 0;
+    int minVertexWeight = Integer.MAX_VALUE, maxVertexWeight = 0;
+    for (int v = 0; v < n; v++) {
+      totalWeight += ig.getVertexWeight(v);
+      minVertexWeight = Math.min(minVertexWeight, ig.getVertexWeight(v));
+      maxVertexWeight = Math.max(maxVertexWeight, ig.getVertexWeight(v));
     }
+    maxSideWeight[0] = options.getMaxSideWeight(0, totalWeight, minVertexWeight, maxVertexWeight);
+    maxSideWeight[1] = options.getMaxSideWeight(1, totalWeight, minVertexWeight, maxVertexWeight);
     
-    // create new unSwapped groups for processing
-    unswappedA = new VertexGroup(A);
-    unswappedB = new VertexGroup(B);
+    dValue = new int[n];
+    dPass = new int[n];
+    edgeTo = new int[n];
+    // a D-value lies within the sum of the absolute weights of the edges of its vertex
+    int maxD = 0;
+    boolean negative = false;
+    for (int v = 0; v < n; v++) {
+      long d = 0;
+      for (int i = 0; i < ig.getDegree(v); i++) {
+        d += Math.abs((long) ig.getNeighborWeight(v, i));
+        negative |= ig.getNeighborWeight(v, i) < 0;
+      }
+      maxD = (int) Math.max(maxD, Math.min(d, Integer.MAX_VALUE / 2));
+    }
+    prune = !negative;
+    buckets = new GainBuckets[] { new GainBuckets(n, maxD), new GainBuckets(n, maxD) };
+    if (partition == null && options.isSpectralStart() && n > 0)
+      partition = SpectralBisection.process(ig, options).getPartition();
+    // Split vertices into A and B, if 2 parts are not equal B gets the extra weight
+    if (partition == null) {
+      partition = new int[n];
+      long targetA = (long) (totalWeight * options.getFractionA());
+      long weightA = 0;
+      for (int v = 0; v < n; v++) {
+        if (weightA + ig.getVertexWeight(v) <= targetA) weightA += ig.getVertexWeight(v);
+        else partition[v] = 1;
+      }
+    }
+    state = new PartitionState(ig, partition);
+    int sizeA = 0;
+    for (int v = 0; v < n; v++)
+      if (state.getSide(v) == 0) sizeA++;
+    this.partitionSize = Math.min(sizeA, n - sizeA);
+    swapsA = new int[partitionSize];
+    swapsB = new int[partitionSize];
+    if (options.isBoundaryOnly()) state.trackBoundary();
     
-    doAllSwaps();
+    cut = state.computeCutCost();
+    doAllPasses();
+  }
+
+  /** Repeats passes until one does not lower the cut cost **/
+  private void doAllPasses() {
+    for (int pass = 0; pass < options.getMaxPasses(); pass++) {
+      long before = cut;
+      doAllSwaps();
+      if (cut >= before || stopped) break;
+    }
   }
   
-  /** Performs swaps(half of graph vertices) and chooses the one with least cut cost one **/
+  /** Performs swaps(half of graph vertices) and chooses the one with least cut cost one.
+   *  D-values are computed once per pass when a vertex first becomes a candidate and
+   *  kept in one bucket list per side, afterwards only the neighbours of the swapped
+   *  vertices are updated, the cut cost is kept as a running delta. The pass gives up after options.getMaxNonImprovingMoves()
+   *  swaps without a new best cut, or in boundary only mode when a side has no
+   *  boundary vertex left, or when the options say to stop. **/
   private void doAllSwaps() {
 
-    LinkedList<Edge> swaps = new LinkedList<Edge>();
-    double minCost = Double.POSITIVE_INFINITY;
+    PartitionListener listener = options.getListener();
+    long start = (listener != null) ? System.nanoTime() : 0;
+    long before = cut;
+    state.unlockAll();
+    pass++;
+    fillBuckets();
+    gainNanos = (listener != null) ? System.nanoTime() - start : 0;
+    long minCost = cut;
     int minId = -1;
     
-    for (int i = 0; i < partitionSize; i++) {
-      double cost = doSingleSwap(swaps);
-      if (cost < minCost) {
-        minCost = cost; 
-        minId = i; 
+    int swapCount = 0;
+    while (swapCount < partitionSize && !(stopped = options.isStopped()) && doSingleSwap(swapCount)) {
+      if (listener != null) listener.moveMade("KernighanLin", pass - 1, swapCount, lastGain, cut);
+      if (cut < minCost) {
+        minCost = cut; 
+        minId = swapCount; 
       }
+      swapCount++;
+      if (swapCount - 1 - minId >= options.getMaxNonImprovingMoves()) break;
     }
     // Unwind swaps
-    while (swaps.size()-1 > minId) {
-      Edge pair = swaps.pop();
+    for (int i = swapCount - 1; i > minId; i--) {
       // unswap
-      swapVertices(A, pair.two, B, pair.one);
+      swapVertices(swapsB[i], swapsA[i]);
     }
+    cut = minCost;
+    if (listener != null)
+      listener.passFinished(new PassStats("KernighanLin", pass - 1, before, cut, swapCount, minId,
+          gainNanos, System.nanoTime() - start - gainNanos));
   }
   
-  /** Chooses the least cost swap and performs it **/
-  private double doSingleSwap(LinkedList<Edge> swaps) {
+  /** Puts the candidates of both sides in the buckets by D-value: every vertex,
+   *  or in boundary only mode the boundary vertices **/
+  private void fillBuckets() {
+    buckets[0].clear();
+    buckets[1].clear();
+    if (options.isBoundaryOnly()) {
+      for (int i = 0; i < state.getBoundarySize(); i++) {
+        int v = state.getBoundaryVertex(i);
+        buckets[state.getSide(v)].insert(v, getDValue(v));
+      }
+    } else {
+      for (int v = 0; v < state.getVertexCount(); v++)
+        buckets[state.getSide(v)].insert(v, getDValue(v));
+    }
+  }
+
+  /** Chooses the least cost swap and performs it as swap number i
+   *  @return false if one side has no candidate left or no swap keeps the balance **/
+  private boolean doSingleSwap(int i) {
    
-    Edge maxPair = null;
-    double maxGain = Double.NEGATIVE_INFINITY;    
-    for (Vertex v_a : unswappedA) {
-      for (Vertex v_b : unswappedB) {        
-        Edge e = graph.findConnected(v_a, v_b);
-        double edge_cost = (e != null) ? e.weight : 0;
+    int firstB = buckets[1].peekMax();
+    if (buckets[0].peekMax() < 0 || firstB < 0) return false;
+    int maxA = -1, maxB = -1;
+    long maxGain = Long.MIN_VALUE;
+    // both sides are visited in decreasing order of D, and since without negative edges the
+    // gain of a pair is at most D(a) + D(b) the search then stops once no better pair can follow
+    for (int v_a = buckets[0].peekMax(); v_a >= 0; v_a = buckets[0].nextAfter(v_a)) {
+      if (prune && maxA >= 0 && (long) dValue[v_a] + dValue[firstB] <= maxGain) break;
+      for (int k = 0; k < intGraph.getDegree(v_a); k++)
+        edgeTo[intGraph.getNeighbor(v_a, k)] += intGraph.getNeighborWeight(v_a, k);
+      for (int v_b = firstB; v_b >= 0; v_b = buckets[1].nextAfter(v_b)) {
+        if (prune && maxA >= 0 && (long) dValue[v_a] + dValue[v_b] <= maxGain) break;
         // Calculate the gain in cost if these vertices were swappeds
-        double gain = getVertexCost(v_a) + getVertexCost(v_b) - 2 * edge_cost;
-        
-        if (gain > maxGain) {
-          maxPair = new Edge(v_a, v_b);
+        long gain = (long) dValue[v_a] + dValue[v_b] - 2 * edgeTo[v_b];
+        if (gain > maxGain && keepsBalance(v_a, v_b)) {
+          maxA = v_a;
+          maxB = v_b;
           maxGain = gain;
         }
       }
+      for (int k = 0; k < intGraph.getDegree(v_a); k++)
+        edgeTo[intGraph.getNeighbor(v_a, k)] = 0;
     }
+    if (maxA < 0) return false;
     
-    swapVertices(A, maxPair.one, B, maxPair.two);
-    swaps.push(maxPair);
-    unswappedA.remove(maxPair.one);
-    unswappedB.remove(maxPair.two);
+    buckets[0].remove(maxA);
+    buckets[1].remove(maxB);
+    swapVertices(maxA, maxB);
+    swapsA[i] = maxA;
+    swapsB[i] = maxB;
+    state.lock(maxA);
+    state.lock(maxB);
+    updateDValues(maxA);
+    updateDValues(maxB);
+    cut -= maxGain;
+    lastGain = maxGain;
     
-    return getCutCost();
+    return true;
+  }
+
+  /** Whether swapping va of A and vb of B keeps both sides within their maximum
+   *  weight, or at least makes neither heavier than it is **/
+  private boolean keepsBalance(int va, int vb) {
+    long delta = (long) intGraph.getVertexWeight(vb) - intGraph.getVertexWeight(va);
+    long weightA = state.getSideWeight(0), weightB = state.getSideWeight(1);
+    return weightA + delta <= Math.max(maxSideWeight[0], weightA)
+        && weightB - delta <= Math.max(maxSideWeight[1], weightB);
+  }
+
+  /** Returns the D-value of v, computing it if it is not yet known in this pass **/
+  private int getDValue(int v) {
+    if (dPass[v] != pass) {
+      dValue[v] = getVertexCost(v);
+      dPass[v] = pass;
+    }
+    return dValue[v];
+  }
+
+  /** Updates the known D-values of the unswapped neighbours of v after v changed side,
+   *  and in boundary only mode adds the neighbours that joined the boundary to the
+   *  buckets and removes those that left it **/
+  private void updateDValues(int v) {
+    for (int i = 0; i < intGraph.getDegree(v); i++) {
+      int v2 = intGraph.getNeighbor(v, i);
+      if (state.isLocked(v2)) continue;
+      int s2 = state.getSide(v2);
+      if (dPass[v2] == pass) {
+        int w = intGraph.getNeighborWeight(v, i);
+        // the edge is internal for v2 now when it was external and the opposite
+        int delta = (s2 == state.getSide(v)) ? -2 * w : 2 * w;
+        dValue[v2] += delta;
+        if (buckets[s2].contains(v2)) buckets[s2].add(v2, delta);
+      }
+      if (options.isBoundaryOnly()) {
+        boolean boundary = state.isBoundary(v2);
+        if (boundary && !buckets[s2].contains(v2)) buckets[s2].insert(v2, getDValue(v2));
+        else if (!boundary && buckets[s2].contains(v2)) buckets[s2].remove(v2);
+      }
+    }
   }
 
   /** Returns the difference of external cost and internal cost of this vertex.
    *  When moving a vertex from within group A, all internal edges become external 
    *  edges and the opposite **/
-  private double getVertexCost(Vertex v) {
+  private int getVertexCost(int v) {
     
-    double cost = 0;
-
-    boolean v1isInA = A.contains(v);
+    int cost = 0;
+    int s = state.getSide(v);
     
-    for (Vertex v2 : graph.getVertices()) {      
-      boolean v2isInA = A.contains(v2);
-      Edge edge = graph.findConnected(v, v2);
-      double edge_cost = (edge != null) ? edge.weight : 0;
-      if (v1isInA != v2isInA) // external
+    for (int i = 0; i < intGraph.getDegree(v); i++) {      
+      int v2 = intGraph.getNeighbor(v, i);
+      int edge_cost = intGraph.getNeighborWeight(v, i);
+      if (s != state.getSide(v2)) // external
         cost += edge_cost;
       else
         cost -= edge_cost;
     }
     return cost;
   }
-  
+
   /** Returns the sum of the costs of all edges between A and B **/
   public double getCutCost() {
-    double cost = 0;
-    for (Edge edge : graph.getEdges()) {     
-      boolean firstInA = A.contains(edge.one);
-      boolean secondInA= A.contains(edge.two);
-      if (firstInA != secondInA) // external
-        cost += edge.weight;
-    }
-    return cost;
+    return cut;
   }
-  
-  /** Swaps va and vb in groups a and b **/
-  private static void swapVertices(VertexGroup a, Vertex va, VertexGroup b, Vertex vb) {
-    if (!a.contains(va) || a.contains(vb) ||
-        !b.contains(vb) || b.contains(va)) throw new RuntimeException("Invalid swap");
-    a.remove(va); a.add(vb);
-    b.remove(vb); b.add(va);
+
+  /** Whether the deadline or cancellation of the options stopped the run early.
+   *  The partition and cut cost are then the best of the work done **/
+  public boolean isStopped() {
+    return stopped;
+  }
+
+  /** Swaps va and vb between groups A and B **/
+  private void swapVertices(int va, int vb) {
+    if (state.getSide(va) == state.getSide(vb)) throw new RuntimeException("Invalid swap");
+    state.move(va);
+    state.move(vb);
   }
 }
\ No newline at end of file
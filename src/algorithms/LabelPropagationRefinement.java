@@ -0,0 +1,348 @@
+package algorithms;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import graph.IntGraph;
+
+/**
+ * Refines a two way split on many cores at once. Every sweep visits the
+ * vertices in parallel and moves each one whose move lowers the cut to the
+ * other side, as long as that side stays within its weight bound. Unlike
+ * Kernighan Lin and Fiduccia Mattheyses no move is ever undone, so a sweep
+ * needs no global order and runs without locks: the sides live in a shared
+ * int[], the side weights in atomic counters.
+ *
+ * A sweep moves vertices from A to B first and from B to A afterwards. Two
+ * neighbours moving the same way at once only gain more than either
+ * expected, so the cut never grows. Only vertices next to a move of the
+ * previous sweep are visited again: moves put their neighbours on a work
+ * list, so after the first sweep a sweep costs as much as the moves it made.
+ *
+ * In deterministic mode the gains of a round are computed in parallel from
+ * the sides as they were when it started, and the moves are then made in
+ * order of gain, vertex id breaking ties, so the result does not depend on
+ * the number of threads or their timing.
+ *
+ * Label propagation stops at a local minimum that a Kernighan Lin or
+ * Fiduccia Mattheyses pass, which may climb out through worse moves, can
+ * still improve, so either can be run as a final polish.
+ *
+ */
+
+public class LabelPropagationRefinement {
+
+  /** What runs on the result of the sweeps **/
+  public enum Polish { NONE, FIDUCCIA_MATTHEYSES, KERNIGHAN_LIN }
+
+  /** Refines partition on the common pool, without polish, in any order **/
+  public static LabelPropagationRefinement process(IntGraph g, int[] partition, RefinementOptions options) {
+    return process(g, partition, options, Polish.NONE, false, ForkJoinPool.commonPool());
+  }
+
+  /** Refines partition, 0 for A and 1 for B per vertex or null for a split in vertex order,
+   *  with at most options.getMaxPasses() sweeps on pool, then runs the given polish with the same options.
+   *  options.getListener() is told about every sweep, though not about single moves **/
+  public static LabelPropagationRefinement process(IntGraph g, int[] partition, RefinementOptions options,
+      Polish polish, boolean deterministic, ForkJoinPool pool) {
+    return new LabelPropagationRefinement(g, partition, options, polish, deterministic, pool);
+  }
+
+  // vertices visited by one task, so that a task is worth forking
+  static final int CHUNK = 2048;
+
+  final private IntGraph graph;
+  public IntGraph getIntGraph() { return graph; }
+  final private ForkJoinPool pool;
+  final private boolean deterministic;
+  // side[v] is 0 when vertex v is in group A and 1 when it is in group B,
+  // written by the sweeping threads
+  final private int[] side;
+  final private AtomicLong[] sideWeight = { new AtomicLong(), new AtomicLong() };
+  final private long[] maxSideWeight = new long[2];
+  // the vertices visited by the current sweep, and those next to its moves that the
+  // next sweep visits, each added once as marked in queued
+  private int[] active;
+  private int activeCount;
+  private int[] nextActive;
+  final private AtomicInteger nextActiveCount = new AtomicInteger();
+  final private AtomicIntegerArray queued;
+  // in deterministic mode, the improving moves of a round packed per work list entry
+  final private long[] candidates;
+  // the vertices moved in the current round, each marked with the round's number in
+  // movedIn, from which the cut is updated by what the moves actually gained
+  final private int[] moved;
+  final private AtomicInteger movedCount = new AtomicInteger();
+  final private int[] movedIn;
+  private int rounds;
+  private long cut;
+  private int sweeps;
+  private boolean stopped;
+
+  private LabelPropagationRefinement(IntGraph g, int[] partition, RefinementOptions options,
+      Polish polish, boolean deterministic, ForkJoinPool pool) {
+    this.graph = g;
+    this.pool = pool;
+    this.deterministic = deterministic;
+    int n = g.getVertexCount();
+    long totalWeight = 0;
+    int minVertexWeight = Integer.MAX_VALUE, maxVertexWeight = 0;
+    for (int v = 0; v < n; v++) {
+      totalWeight += g.getVertexWeight(v);
+      minVertexWeight = Math.min(minVertexWeight, g.getVertexWeight(v));
+      maxVertexWeight = Math.max(maxVertexWeight, g.getVertexWeight(v));
+    }
+    maxSideWeight[0] = options.getMaxSideWeight(0, totalWeight, minVertexWeight, maxVertexWeight);
+    maxSideWeight[1] = options.getMaxSideWeight(1, totalWeight, minVertexWeight, maxVertexWeight);
+    if (partition == null) {
+      partition = new int[n];
+      long targetA = (long) (totalWeight * options.getFractionA());
+      long weightA = 0;
+      for (int v = 0; v < n; v++) {
+        if (weightA + g.getVertexWeight(v) <= targetA) weightA += g.getVertexWeight(v);
+        else partition[v] = 1;
+      }
+    }
+    // checks the partition and weighs the sides
+    PartitionState state = new PartitionState(g, partition);
+    side = state.toArray();
+    sideWeight[0].set(state.getSideWeight(0));
+    sideWeight[1].set(state.getSideWeight(1));
+    active = new int[n];
+    nextActive = new int[n];
+    queued = new AtomicIntegerArray(n);
+    for (int v = 0; v < n; v++) active[v] = v;
+    activeCount = n;
+    candidates = deterministic ? new long[n] : null;
+    moved = new int[n];
+    movedIn = new int[n];
+
+    cut = computeCutCost();
+    doAllSweeps(options);
+    if (stopped) return;
+    switch (polish) {
+      case FIDUCCIA_MATTHEYSES:
+        FiducciaMattheysesAlgorithm fm = FiducciaMattheysesAlgorithm.process(g, side, options);
+        System.arraycopy(fm.getPartition(), 0, side, 0, n);
+        cut = (long) fm.getCutCost();
+        stopped = fm.isStopped();
+        break;
+      case KERNIGHAN_LIN:
+        KernighanLinAlgorithm kl = KernighanLinAlgorithm.process(g, side, options);
+        System.arraycopy(kl.getPartition(), 0, side, 0, n);
+        cut = (long) kl.getCutCost();
+        stopped = kl.isStopped();
+        break;
+      default:
+    }
+  }
+
+  /** Sweeps until one moves nothing, options.getMaxPasses() have run or the options say to stop.
+   *  The cut is kept up to date from the moves, so a sweep costs time in proportion to the
+   *  vertices it visits, listener or not **/
+  private void doAllSweeps(RefinementOptions options) {
+    PartitionListener listener = options.getListener();
+    for (sweeps = 0; sweeps < options.getMaxPasses(); ) {
+      long before = cut;
+      long[] nanos = new long[2];
+      if (stopped = options.isStopped()) break;
+      int moves = round(0, nanos);
+      if (!(stopped = options.isStopped())) moves += round(1, nanos);
+      sweeps++;
+      if (moves == 0) break;
+      if (listener != null)
+        listener.passFinished(new PassStats("LabelPropagation", sweeps - 1, before, cut, moves, nanos[0], nanos[1]));
+      if (stopped) break;
+    }
+  }
+
+  /** Moves the active vertices of side from that improve the cut to the other side.
+   *  nanos receives the time spent on gains and on moves, both in one when not deterministic
+   *  @return the number of moves **/
+  private int round(final int from, long[] nanos) {
+    final LongAdder moves = new LongAdder();
+    long start = System.nanoTime();
+    rounds++;
+    movedCount.set(0);
+    if (!deterministic) {
+      sweep(active, activeCount, new Visitor() {
+        public void visit(int v, int index) {
+          if (gain(v, from) > 0 && move(v, from)) moves.increment();
+        }
+      });
+      nanos[1] += System.nanoTime() - start;
+    } else {
+      // minus the gain in the high half and the vertex in the low one, sorting by descending gain
+      sweep(active, activeCount, new Visitor() {
+        public void visit(int v, int index) {
+          long gain = gain(v, from);
+          candidates[index] = (gain > 0) ? -gain << 32 | v : 0;
+        }
+      });
+      int count = 0;
+      for (int i = 0; i < activeCount; i++)
+        if (candidates[i] != 0) candidates[count++] = candidates[i];
+      Arrays.sort(candidates, 0, count);
+      long gained = System.nanoTime();
+      nanos[0] += gained - start;
+      for (int i = 0; i < count; i++) {
+        if (move((int) candidates[i], from)) moves.increment();
+      }
+      nanos[1] += System.nanoTime() - gained;
+    }
+    long moveStart = System.nanoTime();
+    cut -= realizedGain(from);
+    nanos[1] += System.nanoTime() - moveStart;
+    // after both rounds, the vertices queued in them are the ones the next sweep visits
+    if (from == 1) {
+      int[] t = active;
+      active = nextActive;
+      nextActive = t;
+      activeCount = nextActiveCount.getAndSet(0);
+      for (int i = 0; i < activeCount; i++) queued.set(active[i], 0);
+    }
+    return moves.intValue();
+  }
+
+  /** Returns how much the moves of the current round off side from lowered the cut. Their
+   *  gains as computed before each move may be off, as neighbours move at the same time,
+   *  so the edges of every moved vertex to the vertices that stayed are counted again **/
+  private long realizedGain(final int from) {
+    final LongAdder total = new LongAdder();
+    final int round = rounds;
+    sweep(moved, movedCount.get(), new Visitor() {
+      public void visit(int v, int index) {
+        long gain = 0;
+        for (int i = 0; i < graph.getDegree(v); i++) {
+          int u = graph.getNeighbor(v, i);
+          // an edge between two moved vertices is cut as much as before
+          if (movedIn[u] == round) continue;
+          int w = graph.getNeighborWeight(v, i);
+          gain += (side[u] == from) ? -w : w;
+        }
+        if (gain != 0) total.add(gain);
+      }
+    });
+    return total.sum();
+  }
+
+  /** Returns how much moving vertex v off side from lowers the cut,
+   *  or 0 if it is not on that side **/
+  private long gain(int v, int from) {
+    if (side[v] != from) return 0;
+    long gain = 0;
+    for (int i = 0; i < graph.getDegree(v); i++) {
+      int w = graph.getNeighborWeight(v, i);
+      gain += (side[graph.getNeighbor(v, i)] == from) ? -w : w;
+    }
+    return gain;
+  }
+
+  /** Moves vertex v off side from if the other side has room for it. A vertex
+   *  that does not fit stays active, as room may be made later
+   *  @return whether it was moved **/
+  private boolean move(int v, int from) {
+    if (!reserve(1 - from, graph.getVertexWeight(v))) {
+      queue(v);
+      return false;
+    }
+    sideWeight[from].addAndGet(-graph.getVertexWeight(v));
+    side[v] = 1 - from;
+    movedIn[v] = rounds;
+    moved[movedCount.getAndIncrement()] = v;
+    for (int i = 0; i < graph.getDegree(v); i++) queue(graph.getNeighbor(v, i));
+    return true;
+  }
+
+  /** Adds v to the vertices of the next sweep unless it is there already **/
+  private void queue(int v) {
+    if (queued.get(v) == 0 && queued.compareAndSet(v, 0, 1))
+      nextActive[nextActiveCount.getAndIncrement()] = v;
+  }
+
+  /** Adds weight to side s unless that takes it over its bound
+   *  @return whether the weight was added **/
+  private boolean reserve(int s, int weight) {
+    AtomicLong counter = sideWeight[s];
+    for (long current = counter.get(); ; current = counter.get()) {
+      if (current + weight > maxSideWeight[s]) return false;
+      if (counter.compareAndSet(current, current + weight)) return true;
+    }
+  }
+
+  /** Returns the sum of the costs of all edges between A and B, summed in parallel **/
+  private long computeCutCost() {
+    final LongAdder total = new LongAdder();
+    sweep(null, graph.getVertexCount(), new Visitor() {
+      public void visit(int v, int index) {
+        long cost = 0;
+        for (int i = 0; i < graph.getDegree(v); i++) {
+          int u = graph.getNeighbor(v, i);
+          if (v < u && side[v] != side[u]) cost += graph.getNeighborWeight(v, i);
+        }
+        if (cost != 0) total.add(cost);
+      }
+    });
+    return total.sum();
+  }
+
+  /** Visits the first count vertices of list once, or vertices 0 .. count-1 when list
+   *  is null, in parallel on the pool **/
+  private void sweep(int[] list, int count, Visitor visitor) {
+    if (count > 0) pool.invoke(new Sweep(visitor, list, 0, count));
+  }
+
+  private interface Visitor {
+    /** Visits vertex v, found at index of the swept list **/
+    void visit(int v, int index);
+  }
+
+  /** Visits the entries from .. to-1, split in halves down to CHUNK entries per task **/
+  private static class Sweep extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+    final private Visitor visitor;
+    final private int[] list;
+    final private int from, to;
+
+    Sweep(Visitor visitor, int[] list, int from, int to) {
+      this.visitor = visitor;
+      this.list = list;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= CHUNK) {
+        for (int i = from; i < to; i++) visitor.visit((list != null) ? list[i] : i, i);
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      invokeAll(new Sweep(visitor, list, from, middle), new Sweep(visitor, list, middle, to));
+    }
+  }
+
+  public int[] getPartition() { return side.clone(); }
+  public VertexGroup getGroupA() { return PartitionState.group(graph, null, side, 0); }
+  public VertexGroup getGroupB() { return PartitionState.group(graph, null, side, 1); }
+  /** Number of sweeps run, the last one having moved nothing unless the limit was reached **/
+  public int getSweeps() { return sweeps; }
+
+  /** Returns the sum of the costs of all edges between A and B **/
+  public double getCutCost() {
+    return cut;
+  }
+
+  /** Whether the deadline or cancellation of the options ended the sweeps early,
+   *  leaving out the polish. Every move made lowered the cut, so the partition
+   *  is still the best found **/
+  public boolean isStopped() {
+    return stopped;
+  }
+}
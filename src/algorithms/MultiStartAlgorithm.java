@@ -0,0 +1,140 @@
+package algorithms;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import graph.CompactGraph;
+import graph.Graph;
+import graph.IntGraph;
+
+/**
+ * Runs many independent Fiduccia Mattheyses or Kernighan Lin instances from
+ * different random initial splits in parallel and keeps the split with the
+ * least cut cost. Every start draws from a random stream split off the given
+ * seed in start order, so the result does not depend on the number of threads.
+ *
+ */
+
+public class MultiStartAlgorithm {
+
+  /** Performs the given number of Fiduccia Mattheyses starts on the given graph **/
+  public static MultiStartAlgorithm process(Graph g, int starts) {
+    return new MultiStartAlgorithm(g, CompactGraph.fromGraph(g), starts, 0,
+        MultilevelAlgorithm.Refinement.FIDUCCIA_MATTHEYSES, new RefinementOptions(), ForkJoinPool.commonPool());
+  }
+
+  /** Performs the given number of starts of the given algorithm on the given compact graph **/
+  public static MultiStartAlgorithm process(IntGraph g, int starts, long seed,
+      MultilevelAlgorithm.Refinement algorithm, RefinementOptions options) {
+    return process(g, starts, seed, algorithm, options, ForkJoinPool.commonPool());
+  }
+
+  /** Performs the given number of starts of the given algorithm on the given compact graph, running on pool.
+   *  The algorithm is FIDUCCIA_MATTHEYSES or KERNIGHAN_LIN **/
+  public static MultiStartAlgorithm process(IntGraph g, int starts, long seed,
+      MultilevelAlgorithm.Refinement algorithm, RefinementOptions options, ForkJoinPool pool) {
+    return new MultiStartAlgorithm(null, g, starts, seed, algorithm, options, pool);
+  }
+
+  private int[] side;
+  private double cut = Double.POSITIVE_INFINITY;
+  private int bestStart = -1;
+  public VertexGroup getGroupA() { return PartitionState.group(intGraph, graph, side, 0); }
+  public VertexGroup getGroupB() { return PartitionState.group(intGraph, graph, side, 1); }
+  public int[] getPartition() { return side.clone(); }
+  /** The index of the start that gave the result **/
+  public int getBestStart() { return bestStart; }
+
+  final private Graph graph;
+  /** The graph given to process, or null when a compact graph was given **/
+  public Graph getGraph() { return graph; }
+  final private IntGraph intGraph;
+  public IntGraph getIntGraph() { return intGraph; }
+
+  private MultiStartAlgorithm(Graph g, final IntGraph ig, int starts, long seed,
+      final MultilevelAlgorithm.Refinement algorithm, final RefinementOptions options, ForkJoinPool pool) {
+    if (starts < 1) throw new IllegalArgumentException("At least one start is needed");
+    if (algorithm != MultilevelAlgorithm.Refinement.FIDUCCIA_MATTHEYSES
+        && algorithm != MultilevelAlgorithm.Refinement.KERNIGHAN_LIN)
+      throw new IllegalArgumentException("Multiple starts support Fiduccia Mattheyses and Kernighan Lin, not " + algorithm);
+    this.graph = g;
+    this.intGraph = ig;
+
+    List<Callable<Double>> tasks = new ArrayList<Callable<Double>>();
+    final int[][] results = new int[starts][];
+    // every start gets a stream of its own, split off in start order, so that the
+    // streams are independent between starts and between seeds
+    SplittableRandom seeds = new SplittableRandom(seed);
+    for (int i = 0; i < starts; i++) {
+      final int start = i;
+      final SplittableRandom random = seeds.split();
+      tasks.add(new Callable<Double>() {
+        public Double call() {
+          int[] initial = randomSplit(ig, random, options.getFractionA());
+          if (algorithm == MultilevelAlgorithm.Refinement.KERNIGHAN_LIN) {
+            KernighanLinAlgorithm kl = KernighanLinAlgorithm.process(ig, initial, options);
+            results[start] = kl.getPartition();
+            return kl.getCutCost();
+          }
+          FiducciaMattheysesAlgorithm fm = FiducciaMattheysesAlgorithm.process(ig, initial, options);
+          results[start] = fm.getPartition();
+          return fm.getCutCost();
+        }
+      });
+    }
+
+    List<Future<Double>> futures = pool.invokeAll(tasks);
+    for (int i = 0; i < starts; i++) {
+      double cost;
+      try {
+        cost = futures.get(i).get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("Interrupted while partitioning", e);
+      } catch (ExecutionException e) {
+        throw new RuntimeException("Start " + i + " failed", e.getCause());
+      }
+      if (cost < cut) {
+        cut = cost;
+        bestStart = i;
+      }
+    }
+    side = results[bestStart];
+  }
+
+  /** Shuffles the vertices and puts them into A until it holds fractionA of the weight **/
+  static int[] randomSplit(IntGraph g, SplittableRandom random, double fractionA) {
+    int n = g.getVertexCount();
+    int[] order = new int[n];
+    long totalWeight = 0;
+    for (int v = 0; v < n; v++) {
+      order[v] = v;
+      totalWeight += g.getVertexWeight(v);
+    }
+    for (int i = n - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      int t = order[i]; order[i] = order[j]; order[j] = t;
+    }
+    long targetA = (long) (totalWeight * fractionA);
+    long weightA = 0;
+    int[] split = new int[n];
+    for (int v : order) {
+      if (weightA + g.getVertexWeight(v) <= targetA) {
+        weightA += g.getVertexWeight(v);
+      } else {
+        split[v] = 1;
+      }
+    }
+    return split;
+  }
+
+  /** Returns the least cut cost over all starts **/
+  public double getCutCost() {
+    return cut;
+  }
+}
@@ -0,0 +1,268 @@
+package algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import graph.CompactGraph;
+import graph.Graph;
+import graph.IntGraph;
+
+/**
+ * Multilevel bisection in the style of METIS - the graph is coarsened by heavy
+ * edge matching until it is small, the coarsest graph is bisected and the split
+ * is projected back level by level, refining it on every level with
+ * Fiduccia Mattheyses or Kernighan Lin
+ *
+ */
+
+public class MultilevelAlgorithm {
+
+  /** The algorithm used to refine the split on every level. Label propagation
+   *  refines in parallel on the common pool, with Fiduccia Mattheyses on the finest level **/
+  public enum Refinement { FIDUCCIA_MATTHEYSES, KERNIGHAN_LIN, LABEL_PROPAGATION }
+
+  /** Performs multilevel bisection with Fiduccia Mattheyses refinement on the given graph **/
+  public static MultilevelAlgorithm process(Graph g) {
+    return process(g, Refinement.FIDUCCIA_MATTHEYSES);
+  }
+
+  /** Performs multilevel bisection with the given refinement on the given graph **/
+  public static MultilevelAlgorithm process(Graph g, Refinement refinement) {
+    return new MultilevelAlgorithm(g, CompactGraph.fromGraph(g), refinement, new RefinementOptions());
+  }
+
+  /** Performs multilevel bisection with Fiduccia Mattheyses refinement on the given compact graph **/
+  public static MultilevelAlgorithm process(IntGraph g) {
+    return process(g, Refinement.FIDUCCIA_MATTHEYSES);
+  }
+
+  /** Performs multilevel bisection with the given refinement on the given compact graph.
+   *  Kernighan Lin swaps keep vertex counts, not weights, so on coarse levels
+   *  Fiduccia Mattheyses keeps the sides better balanced. **/
+  public static MultilevelAlgorithm process(IntGraph g, Refinement refinement) {
+    return new MultilevelAlgorithm(null, g, refinement, new RefinementOptions());
+  }
+
+  /** Performs multilevel bisection of the given compact graph aiming for fractionA
+   *  of the total vertex weight in A. Kernighan Lin keeps the split of the coarsest level. **/
+  public static MultilevelAlgorithm process(IntGraph g, Refinement refinement, double fractionA) {
+    return new MultilevelAlgorithm(null, g, refinement, new RefinementOptions().setFractionA(fractionA));
+  }
+
+  /** Performs multilevel bisection of the given compact graph with the given options.
+   *  Every level is refined with them, giving up on a pass after at most REFINEMENT_MOVES
+   *  moves and in boundary only mode. Once the options say to stop, the split is
+   *  projected to the finest level without further refinement **/
+  public static MultilevelAlgorithm process(IntGraph g, Refinement refinement, RefinementOptions options) {
+    return new MultilevelAlgorithm(null, g, refinement, options);
+  }
+
+  // coarsening stops once a level has at most this many vertices
+  static final int COARSEST_SIZE = 100;
+  // or when matching shrinks a level by less than this factor
+  static final double MIN_REDUCTION = 0.95;
+  // number of graph growing starts tried on the coarsest level
+  static final int INITIAL_TRIES = 4;
+  // a projected split is already good, so refinement passes give up early
+  static final int REFINEMENT_MOVES = 100;
+
+  // side[v] is 0 when vertex v is in group A and 1 when it is in group B
+  private int[] side;
+  public VertexGroup getGroupA() { return PartitionState.group(intGraph, graph, side, 0); }
+  public VertexGroup getGroupB() { return PartitionState.group(intGraph, graph, side, 1); }
+  public int[] getPartition() { return side.clone(); }
+
+  final private Graph graph;
+  /** The graph given to process, or null when a compact graph was given **/
+  public Graph getGraph() { return graph; }
+  final private IntGraph intGraph;
+  public IntGraph getIntGraph() { return intGraph; }
+  final private Refinement refinement;
+  final private RefinementOptions options;
+  final private double fractionA;
+  private double cut;
+  private boolean stopped;
+  final private Random random = new Random(0);
+
+  private MultilevelAlgorithm(Graph g, IntGraph ig, Refinement refinement, RefinementOptions options) {
+    this.graph = g;
+    this.intGraph = ig;
+    this.refinement = refinement;
+    this.options = options;
+    this.fractionA = options.getFractionA();
+
+    // coarsen, remembering for every level where its vertices went
+    ArrayList<IntGraph> levels = new ArrayList<IntGraph>();
+    ArrayList<int[]> maps = new ArrayList<int[]>();
+    IntGraph current = ig;
+    levels.add(current);
+    while (current.getVertexCount() > COARSEST_SIZE) {
+      int[] map = new int[current.getVertexCount()];
+      IntGraph coarse = coarsen(current, map);
+      if (coarse.getVertexCount() > MIN_REDUCTION * current.getVertexCount()) break;
+      maps.add(map);
+      levels.add(coarse);
+      current = coarse;
+    }
+
+    side = initialPartition(current);
+    // project back and refine
+    for (int level = maps.size() - 1; level >= 0; level--) {
+      int[] map = maps.get(level);
+      int[] fine = new int[map.length];
+      for (int v = 0; v < map.length; v++) {
+        fine[v] = side[map[v]];
+      }
+      // projection keeps the cut, as coarse edges sum the fine edges between their ends
+      if (!stopped) stopped = options.isStopped();
+      side = stopped ? fine : refine(levels.get(level), fine);
+    }
+  }
+
+  /** Contracts a heavy edge matching of g. map receives the coarse vertex of every vertex of g **/
+  private IntGraph coarsen(IntGraph g, int[] map) {
+    int n = g.getVertexCount();
+    long totalWeight = 0;
+    for (int v = 0; v < n; v++) totalWeight += g.getVertexWeight(v);
+    // keep coarse vertices small enough for the coarsest level to be balanced,
+    // and their weights within an int
+    long maxWeight = Math.min(Integer.MAX_VALUE, Math.max(2, (3 * totalWeight) / (2 * COARSEST_SIZE)));
+
+    int[] match = new int[n];
+    Arrays.fill(match, -1);
+    for (int u : randomOrder(n)) {
+      if (match[u] >= 0) continue;
+      int best = u;
+      int bestWeight = -1;
+      for (int i = 0; i < g.getDegree(u); i++) {
+        int v = g.getNeighbor(u, i);
+        if (match[v] >= 0 || (long) g.getVertexWeight(u) + g.getVertexWeight(v) > maxWeight) continue;
+        if (g.getNeighborWeight(u, i) > bestWeight) {
+          best = v;
+          bestWeight = g.getNeighborWeight(u, i);
+        }
+      }
+      match[u] = best;
+      match[best] = u;
+    }
+
+    int coarseCount = 0;
+    Arrays.fill(map, -1);
+    for (int u = 0; u < n; u++) {
+      if (map[u] >= 0) continue;
+      map[u] = coarseCount;
+      map[match[u]] = coarseCount;
+      coarseCount++;
+    }
+
+    CompactGraph.Builder builder = new CompactGraph.Builder(coarseCount).sumRepeatedEdges();
+    long[] weights = new long[coarseCount];
+    for (int u = 0; u < n; u++) {
+      weights[map[u]] += g.getVertexWeight(u);
+      for (int i = 0; i < g.getDegree(u); i++) {
+        int v = g.getNeighbor(u, i);
+        if (u < v && map[u] != map[v])
+          builder.addEdge(map[u], map[v], g.getNeighborWeight(u, i));
+      }
+    }
+    for (int c = 0; c < coarseCount; c++) {
+      if (weights[c] > Integer.MAX_VALUE)
+        throw new IllegalStateException("Coarse vertex " + c + " weighs " + weights[c] + ", more than an int holds");
+      builder.setVertexWeight(c, (int) weights[c]);
+    }
+    return builder.build();
+  }
+
+  /** Bisects the coarsest graph by growing A breadth first from a few random
+   *  vertices, polishing each start with Fiduccia Mattheyses and keeping the best **/
+  private int[] initialPartition(IntGraph g) {
+    int n = g.getVertexCount();
+    long totalWeight = 0;
+    for (int v = 0; v < n; v++) totalWeight += g.getVertexWeight(v);
+    long targetA = (long) (totalWeight * fractionA);
+
+    int[] best = null;
+    double bestCut = Double.POSITIVE_INFINITY;
+    for (int t = 0; t < INITIAL_TRIES && n > 0 && !stopped; t++) {
+      int[] start = new int[n];
+      Arrays.fill(start, 1);
+      int[] queue = new int[n];
+      int head = 0, tail = 0;
+      long weightA = 0;
+      int[] order = randomOrder(n);
+      // restart from an unvisited vertex when a component runs out
+      for (int k = 0; k < n && weightA < targetA; k++) {
+        if (start[order[k]] == 0) continue;
+        start[order[k]] = 0;
+        weightA += g.getVertexWeight(order[k]);
+        queue[tail++] = order[k];
+        while (head < tail && weightA < targetA) {
+          int u = queue[head++];
+          for (int i = 0; i < g.getDegree(u) && weightA < targetA; i++) {
+            int v = g.getNeighbor(u, i);
+            if (start[v] == 0) continue;
+            start[v] = 0;
+            weightA += g.getVertexWeight(v);
+            queue[tail++] = v;
+          }
+        }
+      }
+      FiducciaMattheysesAlgorithm fm = FiducciaMattheysesAlgorithm.process(g, start, options);
+      stopped = fm.isStopped();
+      if (fm.getCutCost() < bestCut) {
+        bestCut = fm.getCutCost();
+        best = fm.getPartition();
+      }
+    }
+    cut = (best != null) ? bestCut : 0;
+    return (best != null) ? best : new int[0];
+  }
+
+  /** Refines a projected partition of one level **/
+  private int[] refine(IntGraph g, int[] partition) {
+    RefinementOptions options = this.options.copy().setBoundaryOnly(true)
+        .setMaxNonImprovingMoves(Math.min(REFINEMENT_MOVES, this.options.getMaxNonImprovingMoves()));
+    if (refinement == Refinement.KERNIGHAN_LIN) {
+      KernighanLinAlgorithm kl = KernighanLinAlgorithm.process(g, partition, options);
+      cut = kl.getCutCost();
+      stopped |= kl.isStopped();
+      return kl.getPartition();
+    }
+    if (refinement == Refinement.LABEL_PROPAGATION) {
+      LabelPropagationRefinement lp = LabelPropagationRefinement.process(g, partition, options,
+          (g == intGraph) ? LabelPropagationRefinement.Polish.FIDUCCIA_MATTHEYSES : LabelPropagationRefinement.Polish.NONE,
+          false, ForkJoinPool.commonPool());
+      cut = lp.getCutCost();
+      stopped |= lp.isStopped();
+      return lp.getPartition();
+    }
+    FiducciaMattheysesAlgorithm fm = FiducciaMattheysesAlgorithm.process(g, partition, options);
+    cut = fm.getCutCost();
+    stopped |= fm.isStopped();
+    return fm.getPartition();
+  }
+
+  /** Returns 0 .. n-1 in random order **/
+  private int[] randomOrder(int n) {
+    int[] order = new int[n];
+    for (int i = 0; i < n; i++) order[i] = i;
+    for (int i = n - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      int t = order[i]; order[i] = order[j]; order[j] = t;
+    }
+    return order;
+  }
+
+  /** Returns the sum of the costs of all edges between A and B **/
+  public double getCutCost() {
+    return cut;
+  }
+
+  /** Whether the deadline or cancellation of the options cut the initial split or the
+   *  refinement of any level short, the last one included **/
+  public boolean isStopped() {
+    return stopped;
+  }
+}
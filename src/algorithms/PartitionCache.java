@@ -0,0 +1,306 @@
+package algorithms;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import graph.IntGraph;
+
+/**
+ * Remembers partitions by a fingerprint of the graph and of how it was
+ * partitioned, so the same request is answered without running the
+ * algorithm again. The most recently used partitions are kept in memory up
+ * to a fixed count, and with a directory every partition is also written to
+ * disk, where it survives eviction and restarts.
+ *
+ * A graph that differs only in its edges from one seen before, with the same
+ * vertex weights, algorithm and options, is a near miss: the partition of the
+ * last such graph is handed out as a warm start for refinement, as long as it
+ * keeps both sides within the weight bound of the options.
+ *
+ * Memory holds at most capacity partitions and as many warm starts, the least
+ * recently used going first, and the directory at most diskCapacity files,
+ * the least recently used by modification time going first.
+ *
+ */
+
+public class PartitionCache {
+
+  /** Fingerprint of a partitioning request: the shape - algorithm, options, vertex
+   *  count and a hash of the vertex weights - and a hash of the edges and weights **/
+  public static final class Key {
+    final private String shape;
+    final private String content;
+    final private int vertexCount;
+
+    private Key(String shape, String content, int vertexCount) {
+      this.shape = shape;
+      this.content = content;
+      this.vertexCount = vertexCount;
+    }
+
+    public String getShape() { return shape; }
+    public int getVertexCount() { return vertexCount; }
+
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) return false;
+      Key k = (Key) o;
+      return shape.equals(k.shape) && content.equals(k.content);
+    }
+
+    public int hashCode() { return 31 * shape.hashCode() + content.hashCode(); }
+
+    /** Returns the key as a file name **/
+    public String toString() { return shape + "-" + content; }
+  }
+
+  // the cache the ProcessFile classes share, on disk in the directory given by this property
+  static final String DIRECTORY_PROPERTY = "partition.cache.dir";
+  static final int DEFAULT_CAPACITY = 64;
+  static final int DEFAULT_DISK_CAPACITY = 1024;
+  static final String SUFFIX = ".part";
+  private static PartitionCache shared;
+
+  /** Returns the cache shared by the ProcessFile classes, of DEFAULT_CAPACITY
+   *  partitions and on disk when the system property partition.cache.dir is set **/
+  public static synchronized PartitionCache getShared() {
+    if (shared == null) shared = new PartitionCache(DEFAULT_CAPACITY, System.getProperty(DIRECTORY_PROPERTY));
+    return shared;
+  }
+
+  /** Returns the fingerprint of partitioning g with the named algorithm and options.
+   *  Edges are hashed in no particular order, so the order of the neighbours does not matter **/
+  public static Key key(IntGraph g, String algorithm, RefinementOptions options) {
+    int n = g.getVertexCount();
+    // two independent sums of mixed values, 128 bits in all
+    long h1 = 0, h2 = 0;
+    // the vertex weights alone, for the shape
+    long totalWeight = 0, weights = 0;
+    for (int v = 0; v < n; v++) {
+      int vertexWeight = g.getVertexWeight(v);
+      totalWeight += vertexWeight;
+      weights += mix(((long) v << 32 | vertexWeight) ^ 0x3C6EF372FE94F82BL);
+      h1 += mix(~(long) v ^ ((long) vertexWeight << 32));
+      h2 += mix(((long) v << 32 | vertexWeight) * 0x9E3779B97F4A7C15L);
+      for (int i = 0; i < g.getDegree(v); i++) {
+        int u = g.getNeighbor(v, i);
+        if (u < v) continue;
+        long edge = (long) v << 32 | u;
+        int w = g.getNeighborWeight(v, i);
+        h1 += mix(edge + 0x632BE59BD9B4E019L * w);
+        h2 += mix((edge ^ 0xC2B2AE3D27D4EB4FL) * 0x165667B19E3779F9L + w);
+      }
+    }
+    // the shape is part of a file name, so it is kept to letters, digits, '.' and '_'
+    String shape = algorithm + "-" + n + "_" + totalWeight + "_" + String.format("%016x", weights)
+        + "-p" + options.getMaxPasses() + "_m" + options.getMaxNonImprovingMoves()
+        + "_f" + options.getFractionA() + "_i" + options.getImbalance()
+        + "_b" + options.isBoundaryOnly() + "_s" + options.isSpectralStart();
+    return new Key(shape, String.format("%016x%016x", h1, h2), n);
+  }
+
+  /** The finalizer of MurmurHash3 **/
+  private static long mix(long x) {
+    x ^= x >>> 33;
+    x *= 0xFF51AFD7ED558CCDL;
+    x ^= x >>> 33;
+    x *= 0xC4CEB9FE1A85EC53L;
+    x ^= x >>> 33;
+    return x;
+  }
+
+  final private int capacity;
+  final private File directory;
+  final private int diskCapacity;
+  final private LinkedHashMap<Key, int[]> entries;
+  // latest partition stored for every shape
+  final private LinkedHashMap<String, int[]> latest;
+  // partition files in the directory, counted once and then kept up to date
+  private int diskEntries;
+  private int hits, misses;
+
+  /** Keeps up to capacity partitions in memory only **/
+  public PartitionCache(int capacity) {
+    this(capacity, null);
+  }
+
+  /** Keeps up to capacity partitions in memory and up to DEFAULT_DISK_CAPACITY in
+   *  directory, which is created if needed, or in memory only when directory is null **/
+  public PartitionCache(int capacity, String directory) {
+    this(capacity, directory, DEFAULT_DISK_CAPACITY);
+  }
+
+  /** Keeps up to capacity partitions in memory and up to diskCapacity in directory,
+   *  which is created if needed, or in memory only when directory is null **/
+  public PartitionCache(int capacity, String directory, int diskCapacity) {
+    if (capacity < 1) throw new IllegalArgumentException("Capacity must be at least 1");
+    if (diskCapacity < 1) throw new IllegalArgumentException("Disk capacity must be at least 1");
+    this.capacity = capacity;
+    this.diskCapacity = diskCapacity;
+    this.directory = (directory != null) ? new File(directory) : null;
+    if (this.directory != null && !this.directory.isDirectory() && !this.directory.mkdirs())
+      throw new IllegalArgumentException("Cannot create cache directory " + directory);
+    this.entries = lru(capacity);
+    this.latest = lru(capacity);
+    if (this.directory != null) diskEntries = listFiles().length;
+  }
+
+  /** Returns a map dropping its least recently used entry beyond capacity entries **/
+  private static <K> LinkedHashMap<K, int[]> lru(final int capacity) {
+    // access order makes the eldest entry the least recently used one
+    return new LinkedHashMap<K, int[]>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      protected boolean removeEldestEntry(Map.Entry<K, int[]> eldest) {
+        return size() > capacity;
+      }
+    };
+  }
+
+  /** Returns a copy of the partition stored under key, from memory or else from disk,
+   *  or null if there is none **/
+  public synchronized int[] get(Key key) {
+    int[] partition = entries.get(key);
+    if (partition == null && directory != null) {
+      File file = new File(directory, key + SUFFIX);
+      partition = read(file);
+      if (partition != null && partition.length != key.getVertexCount()) partition = null;
+      if (partition != null) {
+        entries.put(key, partition);
+        // a hit makes the file the most recently used one
+        file.setLastModified(System.currentTimeMillis());
+      }
+    }
+    if (partition == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return partition.clone();
+  }
+
+  /** Returns a copy of the latest partition stored with the shape of key, to start
+   *  refinement of g from on a near miss, or null if there is none or it puts more weight
+   *  on a side than options.getMaxSideWeight allows **/
+  public int[] getWarmStart(Key key, IntGraph g, RefinementOptions options) {
+    int[] partition;
+    synchronized (this) {
+      partition = latest.get(key.getShape());
+    }
+    if (partition == null || partition.length != g.getVertexCount()) return null;
+    long[] sideWeight = new long[2];
+    int minVertexWeight = Integer.MAX_VALUE, maxVertexWeight = 0;
+    for (int v = 0; v < partition.length; v++) {
+      int w = g.getVertexWeight(v);
+      sideWeight[partition[v]] += w;
+      minVertexWeight = Math.min(minVertexWeight, w);
+      maxVertexWeight = Math.max(maxVertexWeight, w);
+    }
+    long totalWeight = sideWeight[0] + sideWeight[1];
+    for (int s = 0; s < 2; s++)
+      if (sideWeight[s] > options.getMaxSideWeight(s, totalWeight, minVertexWeight, maxVertexWeight)) return null;
+    return partition.clone();
+  }
+
+  /** Stores a copy of partition under key, writing it to disk as well when there is a directory.
+   *  The key leaves out deadlines and cancellation, so the partition of a run that was
+   *  stopped early must not be stored: it would be served as the full answer **/
+  public synchronized void put(Key key, int[] partition) {
+    if (partition.length != key.getVertexCount())
+      throw new IllegalArgumentException("Partition size must match the number of vertices");
+    int[] copy = partition.clone();
+    entries.put(key, copy);
+    latest.put(key.getShape(), copy);
+    if (directory != null) {
+      File file = new File(directory, key + SUFFIX);
+      boolean added = !file.exists();
+      if (write(file, copy) && added && ++diskEntries > diskCapacity) evict();
+    }
+  }
+
+  /** Deletes the least recently used partition files until diskCapacity are left **/
+  private void evict() {
+    File[] files = listFiles();
+    Arrays.sort(files, new Comparator<File>() {
+      public int compare(File a, File b) {
+        return Long.compare(a.lastModified(), b.lastModified());
+      }
+    });
+    diskEntries = files.length;
+    for (int i = 0; i < files.length && diskEntries > diskCapacity; i++)
+      if (files[i].delete()) diskEntries--;
+  }
+
+  /** Returns the partition files in the directory **/
+  private File[] listFiles() {
+    File[] files = directory.listFiles(new FileFilter() {
+      public boolean accept(File f) {
+        return f.isFile() && f.getName().endsWith(SUFFIX);
+      }
+    });
+    return (files != null) ? files : new File[0];
+  }
+
+  public synchronized int size() { return entries.size(); }
+  public int getCapacity() { return capacity; }
+  public int getDiskCapacity() { return diskCapacity; }
+  public synchronized int getHits() { return hits; }
+  public synchronized int getMisses() { return misses; }
+
+  /** Returns the partition in file, or null if it is missing or unreadable **/
+  private static int[] read(File file) {
+    if (!file.isFile()) return null;
+    try {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+      try {
+        int n = in.readInt();
+        if (n < 0 || 4L * n > file.length()) return null;
+        int[] partition = new int[n];
+        for (int v = 0; v < partition.length; v++) partition[v] = in.readInt();
+        return partition;
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      // a damaged entry is a miss, and is replaced by the next put
+      return null;
+    }
+  }
+
+  /** Writes partition to file through a temporary file, so a reader never sees half of it
+   *  @return whether the file was written **/
+  private static boolean write(File file, int[] partition) {
+    File temp = new File(file.getPath() + ".tmp");
+    try {
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16));
+      try {
+        out.writeInt(partition.length);
+        for (int p : partition) out.writeInt(p);
+      } finally {
+        out.close();
+      }
+      if (!temp.renameTo(file)) {
+        file.delete();
+        if (!temp.renameTo(file)) {
+          temp.delete();
+          return false;
+        }
+      }
+      return true;
+    } catch (IOException e) {
+      // the disk tier is best effort, the entry stays in memory
+      temp.delete();
+      return false;
+    }
+  }
+}
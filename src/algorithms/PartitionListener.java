@@ -0,0 +1,20 @@
+package algorithms;
+
+/**
+ * Receives progress from Kernighan Lin and Fiduccia Mattheyses while they
+ * run, set through RefinementOptions.setListener. Both methods do nothing
+ * unless overridden, and are called on the thread running the algorithm.
+ *
+ */
+
+public interface PartitionListener {
+
+  /** Called after every move of Fiduccia Mattheyses and every swap of Kernighan Lin,
+   *  move counting from 0 within the pass, with its gain and the cut cost after it **/
+  default void moveMade(String algorithm, int pass, int move, long gain, long cutCost) {
+  }
+
+  /** Called at the end of every pass, after the moves past the best prefix were undone **/
+  default void passFinished(PassStats stats) {
+  }
+}
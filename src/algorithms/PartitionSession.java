@@ -0,0 +1,233 @@
+package algorithms;
+
+import java.util.Arrays;
+
+import graph.CompactGraph;
+import graph.DynamicGraph;
+import graph.Graph;
+import graph.IntGraph;
+import graph.Vertex;
+
+/**
+ * Keeps a two way partition of a changing graph up to date. Vertices and
+ * edges are added and removed through the session, which adjusts the cut
+ * cost as they change, and refresh() then runs Fiduccia Mattheyses only on
+ * the region around the vertices touched since the last refresh, through
+ * FiducciaMattheysesAlgorithm.refine(). The gain
+ * buckets and all other state live as long as the session, so a batch of
+ * changes costs time in proportion to the region and not to the graph.
+ *
+ */
+
+public class PartitionSession {
+
+  // refresh() refines the touched vertices and their neighbours this many hops out
+  static final int REGION_DEPTH = 2;
+
+  /** Starts a session on a copy of the given graph with a multilevel partition **/
+  public static PartitionSession start(Graph g) {
+    IntGraph ig = CompactGraph.fromGraph(g);
+    return new PartitionSession(ig, MultilevelAlgorithm.process(ig).getPartition(), new RefinementOptions());
+  }
+
+  /** Starts a session on a copy of the given graph with a multilevel partition **/
+  public static PartitionSession start(IntGraph g, RefinementOptions options) {
+    MultilevelAlgorithm m = MultilevelAlgorithm.process(g, MultilevelAlgorithm.Refinement.FIDUCCIA_MATTHEYSES,
+        options.getFractionA());
+    return new PartitionSession(g, m.getPartition(), options);
+  }
+
+  final private DynamicGraph graph;
+  final private PartitionState state;
+  final private RefinementOptions options;
+  private long cut;
+  private long totalWeight;
+  // heaviest vertex seen so far, a side may exceed its share by this much
+  private int maxVertexWeight;
+  // vertices changed since the last refresh, without repeats
+  private int[] touched = new int[16];
+  private int touchedCount;
+  // region of the current refresh; inRegion[v] == stamp marks its members,
+  // and touched vertices are marked with -stamp before the refresh. A vertex
+  // is a move candidate while it is in the gain buckets
+  private int[] region = new int[16];
+  private int regionSize;
+  // weight of the lightest vertex of the region
+  private int regionMinWeight;
+  private int[] inRegion;
+  private int stamp = 1;
+  // gains of the region vertices of A and of B, grown as the graph grows
+  private GainBuckets[] buckets;
+  private int bucketCapacity, bucketMaxGain;
+  private int[] moves = new int[16];
+  // whether the options stopped the last refresh early
+  private boolean stopped;
+
+  /** Starts a session on a copy of the given graph and partition (0 for A, 1 for B per vertex) **/
+  public PartitionSession(IntGraph g, int[] partition, RefinementOptions options) {
+    this.graph = new DynamicGraph(g);
+    this.state = new PartitionState(graph, partition);
+    this.options = options;
+    this.cut = state.computeCutCost();
+    this.inRegion = new int[Math.max(16, graph.getVertexCount())];
+    for (int v = 0; v < graph.getVertexCount(); v++) {
+      totalWeight += graph.getVertexWeight(v);
+      maxVertexWeight = Math.max(maxVertexWeight, graph.getVertexWeight(v));
+    }
+  }
+
+  /** Adds a vertex of weight 1 on the lighter side relative to its share **/
+  public int addVertex(String label) {
+    return addVertex(label, 1);
+  }
+
+  /** Adds a vertex on the lighter side relative to its share
+   *  @return id of the vertex **/
+  public int addVertex(String label, int weight) {
+    int v = graph.addVertex(label, weight);
+    double fractionA = options.getFractionA();
+    int s = (state.getSideWeight(0) * (1 - fractionA) <= state.getSideWeight(1) * fractionA) ? 0 : 1;
+    state.addVertex(s);
+    totalWeight += weight;
+    maxVertexWeight = Math.max(maxVertexWeight, weight);
+    if (v >= inRegion.length) inRegion = Arrays.copyOf(inRegion, 2 * inRegion.length);
+    touch(v);
+    return v;
+  }
+
+  /** Removes all edges of v and gives it weight 0, its id stays taken **/
+  public void removeVertex(int v) {
+    for (int i = graph.getDegree(v) - 1; i >= 0; i--) {
+      removeEdge(v, graph.getNeighbor(v, i));
+    }
+    setVertexWeight(v, 0);
+    graph.removeVertex(v);
+  }
+
+  /** Adds edge {u, v} of weight 1
+   *  @return false if it is a self loop or already exists **/
+  public boolean addEdge(int u, int v) {
+    return addEdge(u, v, 1);
+  }
+
+  /** Adds edge {u, v} with the given weight
+   *  @return false if it is a self loop or already exists **/
+  public boolean addEdge(int u, int v, int weight) {
+    if (!graph.addEdge(u, v, weight)) return false;
+    if (state.getSide(u) != state.getSide(v)) cut += weight;
+    touch(u);
+    touch(v);
+    return true;
+  }
+
+  /** Removes edge {u, v}
+   *  @return false if there is no such edge **/
+  public boolean removeEdge(int u, int v) {
+    int weight = graph.removeEdge(u, v);
+    if (weight == 0) return false;
+    if (state.getSide(u) != state.getSide(v)) cut -= weight;
+    touch(u);
+    touch(v);
+    return true;
+  }
+
+  /** Changes the weight of vertex v **/
+  public void setVertexWeight(int v, int weight) {
+    int delta = weight - graph.getVertexWeight(v);
+    graph.setVertexWeight(v, weight);
+    state.changeWeight(v, delta);
+    totalWeight += delta;
+    maxVertexWeight = Math.max(maxVertexWeight, weight);
+    touch(v);
+  }
+
+  /** Refines the partition around the vertices changed since the last refresh
+   *  @return the new cut cost **/
+  public double refresh() {
+    if (touchedCount == 0) return cut;
+    collectRegion();
+    touchedCount = 0;
+    stamp++;
+    // the lightest vertex of the graph is not tracked as weights change, so it is taken as 1
+    long[] maxSideWeight = {
+        options.getMaxSideWeight(0, totalWeight, 1, maxVertexWeight),
+        options.getMaxSideWeight(1, totalWeight, 1, maxVertexWeight) };
+    if (moves.length < regionSize) moves = new int[region.length];
+    FiducciaMattheysesAlgorithm fm = FiducciaMattheysesAlgorithm.refine(graph, state, cut, region, regionSize,
+        buckets, moves, maxSideWeight, regionMinWeight, options);
+    cut = (long) fm.getCutCost();
+    stopped = fm.isStopped();
+    return cut;
+  }
+
+  /** Records that v changed **/
+  private void touch(int v) {
+    if (inRegion[v] == -stamp) return;
+    inRegion[v] = -stamp;
+    if (touchedCount == touched.length) touched = Arrays.copyOf(touched, 2 * touchedCount);
+    touched[touchedCount++] = v;
+  }
+
+  /** Collects the vertices within REGION_DEPTH hops of the touched ones by breadth first search,
+   *  and makes sure the gain buckets can hold all of them **/
+  private void collectRegion() {
+    regionSize = 0;
+    regionMinWeight = Integer.MAX_VALUE;
+    int maxGain = 0;
+    for (int i = 0; i < touchedCount; i++) maxGain = Math.max(maxGain, addToRegion(touched[i]));
+    int start = 0;
+    for (int depth = 0; depth < REGION_DEPTH; depth++) {
+      int end = regionSize;
+      for (int i = start; i < end; i++) {
+        int v = region[i];
+        for (int k = 0; k < graph.getDegree(v); k++) {
+          int v2 = graph.getNeighbor(v, k);
+          if (inRegion[v2] != stamp) maxGain = Math.max(maxGain, addToRegion(v2));
+        }
+      }
+      start = end;
+    }
+    int n = graph.getVertexCount();
+    if (buckets == null || bucketCapacity < n || bucketMaxGain < maxGain) {
+      bucketCapacity = Math.max(bucketCapacity, 2 * n);
+      bucketMaxGain = Math.max(2 * bucketMaxGain, maxGain);
+      buckets = new GainBuckets[] { new GainBuckets(bucketCapacity, bucketMaxGain),
+          new GainBuckets(bucketCapacity, bucketMaxGain) };
+    }
+  }
+
+  /** Adds v to the region unless it was removed
+   *  @return the total weight of the edges of v, which bounds its gain **/
+  private int addToRegion(int v) {
+    inRegion[v] = stamp;
+    if (graph.isRemoved(v)) return 0;
+    if (regionSize == region.length) region = Arrays.copyOf(region, 2 * regionSize);
+    region[regionSize++] = v;
+    regionMinWeight = Math.min(regionMinWeight, graph.getVertexWeight(v));
+    int degree = 0;
+    for (int i = 0; i < graph.getDegree(v); i++) degree += Math.abs(graph.getNeighborWeight(v, i));
+    return degree;
+  }
+
+  /** Returns the sum of the costs of all edges between A and B **/
+  public double getCutCost() { return cut; }
+  /** Whether the deadline or cancellation of the options ended the last refresh early,
+   *  leaving the best partition its moves found **/
+  public boolean isStopped() { return stopped; }
+  /** Returns the side of every vertex, removed vertices included **/
+  public int[] getPartition() { return state.toArray(); }
+  public int getSide(int v) { return state.getSide(v); }
+  /** The graph of the session, which must only be changed through the session **/
+  public DynamicGraph getGraph() { return graph; }
+  public VertexGroup getGroupA() { return getGroup(0); }
+  public VertexGroup getGroupB() { return getGroup(1); }
+
+  /** Returns the vertices on the given side, leaving out removed ones **/
+  private VertexGroup getGroup(int s) {
+    VertexGroup group = new VertexGroup();
+    for (int v = 0; v < state.getVertexCount(); v++) {
+      if (state.getSide(v) == s && !graph.isRemoved(v)) group.add(new Vertex(graph.getLabel(v)));
+    }
+    return group;
+  }
+}
@@ -0,0 +1,189 @@
+package algorithms;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import graph.Graph;
+import graph.IntGraph;
+import graph.Vertex;
+
+/**
+ * Two way split of a graph - the side of every vertex, the vertex weight of
+ * both sides and which vertices are locked for the current pass, all indexed
+ * by vertex id so that a membership test is a single array read.
+ * Vertices may be added later on, for graphs that grow.
+ * Outside this package only cutCost is available
+ *
+ */
+
+public class PartitionState {
+
+  final private IntGraph graph;
+  // side[v] is 0 when vertex v is in group A and 1 when it is in group B,
+  // for v below vertexCount, the rest is room to grow
+  private int[] side;
+  private int vertexCount;
+  final private long[] sideWeight = new long[2];
+  // locked vertices have already been moved (or swapped) in this pass
+  final private BitSet locked;
+  // once boundary tracking is on: the number of neighbours on the other side
+  // of every vertex, and the vertices with at least one kept as a sparse set,
+  // boundary[0 .. boundarySize - 1] with boundaryIndex[v] = -1 for the others
+  private int[] external;
+  private int[] boundary;
+  private int[] boundaryIndex;
+  private int boundarySize;
+
+  /** Starts from a copy of the given split, 0 for A and 1 for B per vertex **/
+  PartitionState(IntGraph graph, int[] partition) {
+    if (partition.length != graph.getVertexCount())
+      throw new IllegalArgumentException("Partition size must match the number of vertices");
+    this.graph = graph;
+    this.side = partition.clone();
+    this.vertexCount = side.length;
+    this.locked = new BitSet(side.length);
+    for (int v = 0; v < side.length; v++) {
+      if ((side[v] & ~1) != 0)
+        throw new IllegalArgumentException("Vertex " + v + " is on side " + side[v]);
+      sideWeight[side[v]] += graph.getVertexWeight(v);
+    }
+  }
+
+  int getVertexCount() { return vertexCount; }
+  int getSide(int v) { return side[v]; }
+  long getSideWeight(int s) { return sideWeight[s]; }
+  int[] toArray() { return Arrays.copyOf(side, vertexCount); }
+
+  /** Puts the vertex just added to the graph, id getVertexCount(), on side s.
+   *  Its edges must be added after this, as the boundary counts assume it has none
+   *  @return the id of the vertex **/
+  int addVertex(int s) {
+    if ((s & ~1) != 0) throw new IllegalArgumentException("Vertex " + vertexCount + " is on side " + s);
+    if (vertexCount == side.length) {
+      int capacity = Math.max(16, 2 * side.length);
+      side = Arrays.copyOf(side, capacity);
+      if (external != null) {
+        external = Arrays.copyOf(external, capacity);
+        boundary = Arrays.copyOf(boundary, capacity);
+        boundaryIndex = Arrays.copyOf(boundaryIndex, capacity);
+      }
+    }
+    int v = vertexCount++;
+    side[v] = s;
+    sideWeight[s] += graph.getVertexWeight(v);
+    if (external != null) {
+      external[v] = 0;
+      boundaryIndex[v] = -1;
+    }
+    return v;
+  }
+
+  /** Accounts for the weight of vertex v having changed by delta in the graph **/
+  void changeWeight(int v, int delta) {
+    sideWeight[side[v]] += delta;
+  }
+
+  /** Moves v to the other side **/
+  void move(int v) {
+    int w = graph.getVertexWeight(v);
+    sideWeight[side[v]] -= w;
+    side[v] = 1 - side[v];
+    sideWeight[side[v]] += w;
+    if (external == null) return;
+    int degree = graph.getDegree(v);
+    external[v] = degree - external[v];
+    updateBoundary(v);
+    for (int i = 0; i < degree; i++) {
+      int v2 = graph.getNeighbor(v, i);
+      external[v2] += (side[v2] == side[v]) ? -1 : 1;
+      updateBoundary(v2);
+    }
+  }
+
+  /** Starts keeping the set of boundary vertices up to date as vertices move.
+   *  The edges of the graph must not change while it is on **/
+  void trackBoundary() {
+    if (external != null) return;
+    int n = vertexCount;
+    external = new int[side.length];
+    boundary = new int[side.length];
+    boundaryIndex = new int[side.length];
+    for (int v = 0; v < n; v++) {
+      boundaryIndex[v] = -1;
+      for (int i = 0; i < graph.getDegree(v); i++)
+        if (side[graph.getNeighbor(v, i)] != side[v]) external[v]++;
+      updateBoundary(v);
+    }
+  }
+
+  /** Whether v has a neighbour on the other side, needs trackBoundary() **/
+  boolean isBoundary(int v) { return boundaryIndex[v] >= 0; }
+  int getBoundarySize() { return boundarySize; }
+  /** Returns boundary vertex i, 0 <= i < getBoundarySize(), in no particular order **/
+  int getBoundaryVertex(int i) { return boundary[i]; }
+
+  /** Adds v to or removes it from the boundary set to match its external count **/
+  private void updateBoundary(int v) {
+    boolean inSet = boundaryIndex[v] >= 0;
+    if (external[v] > 0 && !inSet) {
+      boundaryIndex[v] = boundarySize;
+      boundary[boundarySize++] = v;
+    } else if (external[v] == 0 && inSet) {
+      // fill the gap with the last member
+      int last = boundary[--boundarySize];
+      boundary[boundaryIndex[v]] = last;
+      boundaryIndex[last] = boundaryIndex[v];
+      boundaryIndex[v] = -1;
+    }
+  }
+
+  boolean isLocked(int v) { return locked.get(v); }
+  void lock(int v) { locked.set(v); }
+  void unlock(int v) { locked.clear(v); }
+  void unlockAll() { locked.clear(); }
+  /** Returns the first unlocked vertex from v on, or getVertexCount() if there is none **/
+  int nextUnlocked(int v) { return locked.nextClearBit(v); }
+
+  /** Sums the costs of all edges between A and B from scratch **/
+  long computeCutCost() {
+    return cutCost(graph, side, vertexCount);
+  }
+
+  /** Returns the vertices on the given side as a group, taken from g when it is not null **/
+  VertexGroup getGroup(Graph g, int s) {
+    return group(graph, g, side, vertexCount, s);
+  }
+
+  /** Sums the costs of all edges of ig between vertices of different parts **/
+  public static long cutCost(IntGraph ig, int[] part) {
+    return cutCost(ig, part, part.length);
+  }
+
+  private static long cutCost(IntGraph ig, int[] part, int n) {
+    long cost = 0;
+    for (int v = 0; v < n; v++) {
+      for (int i = 0; i < ig.getDegree(v); i++) {
+        int v2 = ig.getNeighbor(v, i);
+        if (v < v2 && part[v] != part[v2]) // external
+          cost += ig.getNeighborWeight(v, i);
+      }
+    }
+    return cost;
+  }
+
+  /** Returns the vertices of part p as a group, the vertices of g when it is
+   *  not null and new vertices with the labels of ig otherwise **/
+  static VertexGroup group(IntGraph ig, Graph g, int[] part, int p) {
+    return group(ig, g, part, part.length, p);
+  }
+
+  private static VertexGroup group(IntGraph ig, Graph g, int[] part, int n, int p) {
+    VertexGroup group = new VertexGroup();
+    for (int v = 0; v < n; v++) {
+      if (part[v] != p) continue;
+      String label = ig.getLabel(v);
+      group.add(g != null ? g.getVertex(label) : new Vertex(label));
+    }
+    return group;
+  }
+}
@@ -0,0 +1,36 @@
+package algorithms;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Listener adding up the passes of any number of runs, for export to a
+ * metrics system. It may be shared by algorithms running on several threads.
+ *
+ */
+
+public class PassCounters implements PartitionListener {
+
+  final private AtomicLong passes = new AtomicLong();
+  final private AtomicLong moves = new AtomicLong();
+  final private AtomicLong movesRolledBack = new AtomicLong();
+  final private AtomicLong cutReduction = new AtomicLong();
+  final private AtomicLong gainNanos = new AtomicLong();
+  final private AtomicLong moveNanos = new AtomicLong();
+
+  public void passFinished(PassStats stats) {
+    passes.incrementAndGet();
+    moves.addAndGet(stats.getMoves());
+    movesRolledBack.addAndGet(stats.getMovesRolledBack());
+    cutReduction.addAndGet(stats.getCutBefore() - stats.getCutAfter());
+    gainNanos.addAndGet(stats.getGainNanos());
+    moveNanos.addAndGet(stats.getMoveNanos());
+  }
+
+  public long getPasses() { return passes.get(); }
+  public long getMoves() { return moves.get(); }
+  public long getMovesRolledBack() { return movesRolledBack.get(); }
+  /** Sum of the cut costs saved by all passes **/
+  public long getCutReduction() { return cutReduction.get(); }
+  public long getGainNanos() { return gainNanos.get(); }
+  public long getMoveNanos() { return moveNanos.get(); }
+}
@@ -0,0 +1,72 @@
+package algorithms;
+
+import java.util.Locale;
+
+/**
+ * What one pass of Kernighan Lin or Fiduccia Mattheyses did, as reported to
+ * a PartitionListener: the cut cost before and after, the moves made and how
+ * many of them were undone, and the time spent computing gains (filling the
+ * gain buckets or sorting by D-value) against the time spent moving. A sweep
+ * of label propagation keeps every move it makes, so it has no best prefix.
+ *
+ */
+
+public final class PassStats {
+
+  final private String algorithm;
+  final private int pass;
+  final private long cutBefore, cutAfter;
+  final private int moves;
+  final private int bestPrefix;
+  // false when the pass kept every move instead of choosing a prefix
+  final private boolean prefix;
+  final private long gainNanos, moveNanos;
+
+  PassStats(String algorithm, int pass, long cutBefore, long cutAfter, int moves, int bestPrefix,
+      long gainNanos, long moveNanos) {
+    this.algorithm = algorithm;
+    this.pass = pass;
+    this.cutBefore = cutBefore;
+    this.cutAfter = cutAfter;
+    this.moves = moves;
+    this.bestPrefix = bestPrefix;
+    this.prefix = true;
+    this.gainNanos = gainNanos;
+    this.moveNanos = moveNanos;
+  }
+
+  /** Stats of a pass that kept all its moves **/
+  PassStats(String algorithm, int pass, long cutBefore, long cutAfter, int moves, long gainNanos, long moveNanos) {
+    this.algorithm = algorithm;
+    this.pass = pass;
+    this.cutBefore = cutBefore;
+    this.cutAfter = cutAfter;
+    this.moves = moves;
+    this.bestPrefix = -1;
+    this.prefix = false;
+    this.gainNanos = gainNanos;
+    this.moveNanos = moveNanos;
+  }
+
+  public String getAlgorithm() { return algorithm; }
+  /** Number of the pass, counting from 0 **/
+  public int getPass() { return pass; }
+  public long getCutBefore() { return cutBefore; }
+  public long getCutAfter() { return cutAfter; }
+  /** Moves (swaps for Kernighan Lin) made in the pass, kept or not **/
+  public int getMoves() { return moves; }
+  /** Index of the last move kept, the minId of the pass, or -1 if none was kept
+   *  or the pass kept every move without choosing a prefix **/
+  public int getBestPrefix() { return bestPrefix; }
+  /** Whether the pass chose a best prefix of its moves and undid the rest **/
+  public boolean hasBestPrefix() { return prefix; }
+  public int getMovesKept() { return prefix ? bestPrefix + 1 : moves; }
+  public int getMovesRolledBack() { return prefix ? moves - bestPrefix - 1 : 0; }
+  public long getGainNanos() { return gainNanos; }
+  public long getMoveNanos() { return moveNanos; }
+
+  public String toString() {
+    return String.format(Locale.ROOT, "%s pass %d: cut %d -> %d, %d moves, %d kept, gains %.3f ms, moves %.3f ms",
+        algorithm, pass, cutBefore, cutAfter, moves, getMovesKept(), gainNanos / 1e6, moveNanos / 1e6);
+  }
+}
@@ -0,0 +1,129 @@
+package algorithms;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import graph.CompactGraph;
+import graph.Graph;
+import graph.IntGraph;
+
+/**
+ * k-way partitioning by recursive bisection - every bisection splits the vertex
+ * weight in proportion to the number of parts wanted on each side, and the two
+ * halves are partitioned further as independent fork join tasks, so deep levels
+ * of the recursion run on all cores
+ *
+ */
+
+public class RecursiveBisectionAlgorithm {
+
+  /** The algorithm used for every bisection **/
+  public enum Bisection { FIDUCCIA_MATTHEYSES, KERNIGHAN_LIN, MULTILEVEL }
+
+  /** Splits the given graph into k parts with Fiduccia Mattheyses bisections **/
+  public static RecursiveBisectionAlgorithm process(Graph g, int k) {
+    return process(g, k, Bisection.FIDUCCIA_MATTHEYSES);
+  }
+
+  /** Splits the given graph into k parts with the given bisection **/
+  public static RecursiveBisectionAlgorithm process(Graph g, int k, Bisection bisection) {
+    return new RecursiveBisectionAlgorithm(g, CompactGraph.fromGraph(g), k, bisection, ForkJoinPool.commonPool());
+  }
+
+  /** Splits the given compact graph into k parts with the given bisection **/
+  public static RecursiveBisectionAlgorithm process(IntGraph g, int k, Bisection bisection) {
+    return process(g, k, bisection, ForkJoinPool.commonPool());
+  }
+
+  /** Splits the given compact graph into k parts with the given bisection, running on pool **/
+  public static RecursiveBisectionAlgorithm process(IntGraph g, int k, Bisection bisection, ForkJoinPool pool) {
+    return new RecursiveBisectionAlgorithm(null, g, k, bisection, pool);
+  }
+
+  // part[v] is the part of vertex v, 0 .. k-1
+  final private int[] part;
+  public int[] getPartition() { return part.clone(); }
+  final private int partCount;
+  public int getPartCount() { return partCount; }
+
+  final private Graph graph;
+  /** The graph given to process, or null when a compact graph was given **/
+  public Graph getGraph() { return graph; }
+  final private IntGraph intGraph;
+  public IntGraph getIntGraph() { return intGraph; }
+  final private Bisection bisection;
+
+  private RecursiveBisectionAlgorithm(Graph g, IntGraph ig, int k, Bisection bisection, ForkJoinPool pool) {
+    if (k < 1) throw new IllegalArgumentException("Number of parts must be positive");
+    this.graph = g;
+    this.intGraph = ig;
+    this.partCount = k;
+    this.bisection = bisection;
+    int n = ig.getVertexCount();
+    part = new int[n];
+    int[] all = new int[n];
+    for (int v = 0; v < n; v++) all[v] = v;
+    pool.invoke(new BisectTask(all, 0, k));
+  }
+
+  /** Splits its vertices between parts firstPart .. firstPart+parts-1 **/
+  private class BisectTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+    // vertex ids of the whole graph, in increasing order
+    final private int[] vertices;
+    final private int firstPart, parts;
+
+    BisectTask(int[] vertices, int firstPart, int parts) {
+      this.vertices = vertices;
+      this.firstPart = firstPart;
+      this.parts = parts;
+    }
+
+    @Override
+    protected void compute() {
+      if (parts == 1 || vertices.length <= 1) {
+        for (int v : vertices) part[v] = firstPart;
+        return;
+      }
+      int partsA = parts / 2;
+      IntGraph sub = (vertices.length == intGraph.getVertexCount())
+          ? intGraph : CompactGraph.induced(intGraph, vertices);
+      int[] split = bisect(sub, partsA / (double) parts);
+
+      int sizeA = 0;
+      for (int s : split) if (s == 0) sizeA++;
+      int[] verticesA = new int[sizeA];
+      int[] verticesB = new int[vertices.length - sizeA];
+      int a = 0, b = 0;
+      for (int i = 0; i < vertices.length; i++) {
+        if (split[i] == 0) verticesA[a++] = vertices[i];
+        else verticesB[b++] = vertices[i];
+      }
+      invokeAll(new BisectTask(verticesA, firstPart, partsA),
+          new BisectTask(verticesB, firstPart + partsA, parts - partsA));
+    }
+  }
+
+  /** Bisects g with fractionA of the weight in A **/
+  private int[] bisect(IntGraph g, double fractionA) {
+    switch (bisection) {
+      case KERNIGHAN_LIN:
+        return KernighanLinAlgorithm.process(g, null, new RefinementOptions().setFractionA(fractionA)).getPartition();
+      case MULTILEVEL:
+        return MultilevelAlgorithm.process(g, MultilevelAlgorithm.Refinement.FIDUCCIA_MATTHEYSES, fractionA).getPartition();
+      default:
+        return FiducciaMattheysesAlgorithm.process(g, fractionA).getPartition();
+    }
+  }
+
+  /** Returns the sum of the costs of all edges between different parts **/
+  public double getCutCost() {
+    return PartitionState.cutCost(intGraph, part);
+  }
+
+  /** Returns the vertices of the given part as a group **/
+  public VertexGroup getGroup(int p) {
+    return PartitionState.group(intGraph, graph, part, p);
+  }
+}
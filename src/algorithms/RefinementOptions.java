@@ -0,0 +1,139 @@
+package algorithms;
+
+/**
+ * Settings for Kernighan Lin and Fiduccia Mattheyses - how many passes to run
+ * and when to give up on a pass or on the whole run
+ *
+ */
+
+public class RefinementOptions {
+
+  /** No limit **/
+  public static final int UNLIMITED = Integer.MAX_VALUE;
+
+  private int maxPasses = 20;
+  private int maxNonImprovingMoves = UNLIMITED;
+  private double fractionA = 0.5;
+  private double imbalance = 0;
+  private boolean boundaryOnly = false;
+  private boolean spectralStart = false;
+  private PartitionListener listener;
+  private long deadline;
+  private boolean hasDeadline = false;
+  private CancellationToken cancellation;
+
+  /** Passes are repeated until one does not lower the cut cost or this many have run **/
+  public int getMaxPasses() { return maxPasses; }
+  public RefinementOptions setMaxPasses(int maxPasses) {
+    if (maxPasses < 1) throw new IllegalArgumentException("At least one pass is needed");
+    this.maxPasses = maxPasses;
+    return this;
+  }
+
+  /** A pass stops after this many moves (swaps for Kernighan Lin) in a row
+   *  that do not beat the best cut cost of the pass **/
+  public int getMaxNonImprovingMoves() { return maxNonImprovingMoves; }
+  public RefinementOptions setMaxNonImprovingMoves(int maxNonImprovingMoves) {
+    if (maxNonImprovingMoves < 1) throw new IllegalArgumentException("At least one move is needed");
+    this.maxNonImprovingMoves = maxNonImprovingMoves;
+    return this;
+  }
+
+  /** Share of the total vertex weight Fiduccia Mattheyses aims for in group A **/
+  public double getFractionA() { return fractionA; }
+  public RefinementOptions setFractionA(double fractionA) {
+    if (!(fractionA > 0 && fractionA < 1))
+      throw new IllegalArgumentException("Fraction of A must be between 0 and 1");
+    this.fractionA = fractionA;
+    return this;
+  }
+
+  /** How far the vertex weight of a side may exceed its share, 0.03 allowing 3% over.
+   *  At 0, the default, a side may exceed its share by the heaviest vertex as in the
+   *  original Fiduccia Mattheyses, otherwise the bound holds up to the lightest vertex,
+   *  without which no vertex could move **/
+  public double getImbalance() { return imbalance; }
+  public RefinementOptions setImbalance(double imbalance) {
+    if (!(imbalance >= 0)) throw new IllegalArgumentException("Imbalance must not be negative");
+    this.imbalance = imbalance;
+    return this;
+  }
+
+  /** Returns the heaviest side s (0 for A, 1 for B) may become, given the total vertex
+   *  weight and the weights of the lightest and heaviest vertex **/
+  public long getMaxSideWeight(int s, long totalWeight, int minVertexWeight, int maxVertexWeight) {
+    double share = totalWeight * ((s == 0) ? fractionA : 1 - fractionA);
+    if (imbalance == 0) return (long) share + maxVertexWeight;
+    return Math.max((long) (share * (1 + imbalance)), (long) share + Math.max(1, minVertexWeight));
+  }
+
+  /** Only vertices with a neighbour on the other side are candidates for a move,
+   *  so a pass costs time in proportion to the cut and not to the whole graph.
+   *  Best for refining a split that is already good **/
+  public boolean isBoundaryOnly() { return boundaryOnly; }
+  public RefinementOptions setBoundaryOnly(boolean boundaryOnly) {
+    this.boundaryOnly = boundaryOnly;
+    return this;
+  }
+
+  /** Without a starting partition, start from SpectralBisection instead of splitting
+   *  the vertices in order. Costs a few hundred sweeps over the edges but saves
+   *  passes on mesh like graphs, where vertex order says little about locality **/
+  public boolean isSpectralStart() { return spectralStart; }
+  public RefinementOptions setSpectralStart(boolean spectralStart) {
+    this.spectralStart = spectralStart;
+    return this;
+  }
+
+  /** Told about every move and pass, or null, the default, for no reporting and no timing **/
+  public PartitionListener getListener() { return listener; }
+  public RefinementOptions setListener(PartitionListener listener) {
+    this.listener = listener;
+    return this;
+  }
+
+  /** Time, as given by System.nanoTime(), after which no further move or pass is started.
+   *  The algorithm then returns the best partition of the work done so far **/
+  public long getDeadline() { return deadline; }
+  public boolean hasDeadline() { return hasDeadline; }
+  public RefinementOptions setDeadline(long deadline) {
+    this.deadline = deadline;
+    this.hasDeadline = true;
+    return this;
+  }
+
+  /** Sets the deadline to the given number of milliseconds from now **/
+  public RefinementOptions setTimeLimit(long millis) {
+    if (millis < 0) throw new IllegalArgumentException("Time limit must not be negative");
+    return setDeadline(System.nanoTime() + millis * 1000000L);
+  }
+
+  /** Token that stops the algorithm as the deadline does once cancelled, or null for none **/
+  public CancellationToken getCancellation() { return cancellation; }
+  public RefinementOptions setCancellation(CancellationToken cancellation) {
+    this.cancellation = cancellation;
+    return this;
+  }
+
+  /** Returns new options with the same settings, listener, deadline and token **/
+  RefinementOptions copy() {
+    RefinementOptions c = new RefinementOptions();
+    c.maxPasses = maxPasses;
+    c.maxNonImprovingMoves = maxNonImprovingMoves;
+    c.fractionA = fractionA;
+    c.imbalance = imbalance;
+    c.boundaryOnly = boundaryOnly;
+    c.spectralStart = spectralStart;
+    c.listener = listener;
+    c.deadline = deadline;
+    c.hasDeadline = hasDeadline;
+    c.cancellation = cancellation;
+    return c;
+  }
+
+  /** Whether the deadline has passed or the token was cancelled, checked between moves **/
+  boolean isStopped() {
+    return (cancellation != null && cancellation.isCancelled())
+        || (hasDeadline && System.nanoTime() - deadline >= 0);
+  }
+}
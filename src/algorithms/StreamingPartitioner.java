@@ -0,0 +1,327 @@
+package algorithms;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+
+import graph.CompactGraph;
+import graph.IntGraph;
+import graph.MetisStream;
+
+/**
+ * One pass k-way partitioning of a graph streamed vertex by vertex. Every
+ * vertex is put into a part as soon as it arrives, scored by its edges to
+ * the vertices already placed against how full the part is, so only the
+ * part of every vertex is kept - O(V) ints - and the edges are never stored.
+ *
+ * Linear Deterministic Greedy scores part p as e(p) * (1 - w(p) / C) and
+ * Fennel as e(p) - alpha * gamma * w(p)^(gamma - 1), where e(p) is the weight
+ * of the edges to part p, w(p) the weight of part p and C its capacity.
+ * No part grows beyond C = (1 + slack) times its share while another has room.
+ *
+ */
+
+public class StreamingPartitioner {
+
+  /** The scoring of the parts for an arriving vertex **/
+  public enum Scoring { LINEAR_DETERMINISTIC_GREEDY, FENNEL }
+
+  // allowed overweight of a part over its share
+  public static final double DEFAULT_SLACK = 0.05;
+  // exponent of the Fennel balance penalty
+  static final double FENNEL_GAMMA = 1.5;
+
+  /** Partitions the METIS graph at path into k parts **/
+  public static StreamingPartitioner process(String path, int k, Scoring scoring) throws IOException {
+    MetisStream stream = new MetisStream(path);
+    try {
+      return process(stream, k, scoring, DEFAULT_SLACK);
+    } finally {
+      stream.close();
+    }
+  }
+
+  /** Partitions the METIS graph read from in into k parts **/
+  public static StreamingPartitioner process(InputStream in, int k, Scoring scoring) throws IOException {
+    return process(new MetisStream(in), k, scoring, DEFAULT_SLACK);
+  }
+
+  /** Partitions the rest of the METIS stream into k parts, letting parts exceed their share by slack **/
+  public static StreamingPartitioner process(MetisStream stream, int k, Scoring scoring, double slack) throws IOException {
+    StreamingPartitioner sp = new StreamingPartitioner(stream.getVertexCount(), stream.getEdgeCount(), k, scoring, slack);
+    while (stream.next()) {
+      sp.place(stream.getVertex(), stream.getVertexWeight(), stream.getDegree(), stream);
+    }
+    return sp;
+  }
+
+  /** Partitions g into k parts streaming its vertices in id order, for graphs such
+   *  as MappedGraph that need not be in the heap **/
+  public static StreamingPartitioner process(IntGraph g, int k, Scoring scoring, double slack) {
+    StreamingPartitioner sp = new StreamingPartitioner(g.getVertexCount(), g.getEdgeCount(), k, scoring, slack);
+    for (int v = 0; v < g.getVertexCount(); v++) {
+      sp.place(v, g.getVertexWeight(v), g.getDegree(v), g);
+    }
+    return sp;
+  }
+
+  // part of every vertex, -1 until it arrives
+  final private int[] part;
+  final private long[] partWeight;
+  final private int k;
+  final private Scoring scoring;
+  final private double slack;
+  final private double alpha;
+  private long placedWeight;
+  private int placed;
+  private long cut;
+  // weight of the edges from the arriving vertex to each part, and the parts touched
+  final private long[] edgesTo;
+  final private int[] touched;
+  public int[] getPartition() { return part.clone(); }
+  public int getPartCount() { return k; }
+
+  private StreamingPartitioner(int n, long m, int k, Scoring scoring, double slack) {
+    if (k < 1) throw new IllegalArgumentException("At least one part is needed");
+    if (slack < 0) throw new IllegalArgumentException("Slack must not be negative");
+    this.part = new int[n];
+    Arrays.fill(part, -1);
+    this.partWeight = new long[k];
+    this.k = k;
+    this.scoring = scoring;
+    this.slack = slack;
+    // alpha = sqrt(k) * m / n^gamma from the Fennel paper
+    this.alpha = Math.sqrt(k) * m / Math.pow(Math.max(1, n), FENNEL_GAMMA);
+    this.edgesTo = new long[k];
+    this.touched = new int[k];
+  }
+
+  /** Puts vertex v into the part with the best score, the neighbours coming from stream **/
+  private void place(int v, int weight, int degree, MetisStream stream) {
+    int count = 0;
+    for (int i = 0; i < degree; i++)
+      count = addEdgeTo(stream.getNeighbor(i), stream.getNeighborWeight(i), count);
+    assign(v, weight, count);
+  }
+
+  /** Puts vertex v into the part with the best score, the neighbours coming from g **/
+  private void place(int v, int weight, int degree, IntGraph g) {
+    int count = 0;
+    for (int i = 0; i < degree; i++)
+      count = addEdgeTo(g.getNeighbor(v, i), g.getNeighborWeight(v, i), count);
+    assign(v, weight, count);
+  }
+
+  /** Counts an edge to u if u has been placed
+   *  @return the number of parts touched so far **/
+  private int addEdgeTo(int u, int weight, int count) {
+    int p = part[u];
+    if (p < 0) return count;
+    if (edgesTo[p] == 0) touched[count++] = p;
+    edgesTo[p] += weight;
+    return count;
+  }
+
+  /** Chooses the part of v given the edge weights to the touched parts **/
+  private void assign(int v, int weight, int count) {
+    // the total weight is not known ahead, so it is estimated from the weight so far
+    double expected = (placed == 0) ? part.length : (double) (placedWeight + weight) / (placed + 1) * part.length;
+    double capacity = Math.max((1 + slack) * expected / k, weight);
+    int best = -1;
+    double bestScore = Double.NEGATIVE_INFINITY;
+    // parts without an edge to v all score by balance alone, so only the lightest
+    // matters, and ties go to the lighter part
+    int lightest = 0;
+    for (int p = 1; p < k; p++)
+      if (partWeight[p] < partWeight[lightest]) lightest = p;
+    for (int i = 0; i <= count; i++) {
+      int p = (i < count) ? touched[i] : lightest;
+      if (partWeight[p] + weight > capacity) continue;
+      double score = score(edgesTo[p], partWeight[p], capacity);
+      if (score > bestScore || (score == bestScore && partWeight[p] < partWeight[best])) {
+        best = p;
+        bestScore = score;
+      }
+    }
+    // every part is full, which the slack only allows with heavy vertices
+    if (best < 0) best = lightest;
+
+    for (int i = 0; i < count; i++) {
+      int p = touched[i];
+      if (p != best) cut += edgesTo[p];
+      edgesTo[p] = 0;
+    }
+    part[v] = best;
+    partWeight[best] += weight;
+    placedWeight += weight;
+    placed++;
+  }
+
+  private double score(long edges, long weight, double capacity) {
+    if (scoring == Scoring.FENNEL)
+      return edges - alpha * FENNEL_GAMMA * Math.pow(weight, FENNEL_GAMMA - 1);
+    return edges * (1 - weight / capacity);
+  }
+
+  /** Improves the split of every pair of parts joined by an edge with Fiduccia
+   *  Mattheyses, keeping the weights of the two parts. Whether a pair is joined is
+   *  decided just before it is refined, after the moves of the pairs before it.
+   *  The pair is refined on its induced subgraph, which is exact as edges to other
+   *  parts stay cut either way. With two parts g is refined as it is, so it may be
+   *  a MappedGraph **/
+  public void refine(IntGraph g, RefinementOptions options) {
+    if (g.getVertexCount() != part.length)
+      throw new IllegalArgumentException("Graph size must match the number of vertices");
+    if (k == 2) {
+      refinePair(g, null, 0, 1, options);
+      return;
+    }
+    // vertices of every part in id order
+    int[] size = new int[k];
+    for (int v = 0; v < part.length; v++) size[part[v]]++;
+    int[][] members = new int[k][];
+    for (int p = 0; p < k; p++) members[p] = new int[size[p]];
+    Arrays.fill(size, 0);
+    for (int v = 0; v < part.length; v++) members[part[v]][size[part[v]]++] = v;
+    // arcs[p * k + q] counts the edge ends in p with the other end in q, kept up to date
+    // as pairs are refined so that every pair is judged by the parts as they are by then
+    long[] arcs = new long[k * k];
+    for (int v = 0; v < part.length; v++)
+      for (int i = 0; i < g.getDegree(v); i++)
+        arcs[part[v] * k + part[g.getNeighbor(v, i)]]++;
+
+    for (int p = 0; p < k; p++) {
+      for (int q = p + 1; q < k; q++) {
+        if (arcs[p * k + q] == 0) continue;
+        // merge the two sorted lists
+        int[] mp = members[p], mq = members[q];
+        int[] vertices = new int[mp.length + mq.length];
+        int a = 0, b = 0, n = 0;
+        while (a < mp.length || b < mq.length) {
+          if (b == mq.length || (a < mp.length && mp[a] < mq[b])) vertices[n++] = mp[a++];
+          else vertices[n++] = mq[b++];
+        }
+        int[] was = new int[n];
+        for (int i = 0; i < n; i++) was[i] = part[vertices[i]];
+        refinePair(CompactGraph.induced(g, vertices), vertices, p, q, options);
+        // undo the moves for a moment and redo them one by one, counting the arcs as
+        // they go, so that an edge between two moved vertices is counted right
+        int[] to = new int[n];
+        for (int i = 0; i < n; i++) {
+          to[i] = part[vertices[i]];
+          part[vertices[i]] = was[i];
+        }
+        for (int i = 0; i < n; i++)
+          if (to[i] != was[i]) moveArcs(g, arcs, vertices[i], to[i]);
+        // regroup the two parts for the pairs still to come
+        int sizeP = 0;
+        for (int v : vertices) if (part[v] == p) sizeP++;
+        members[p] = new int[sizeP];
+        members[q] = new int[vertices.length - sizeP];
+        a = 0;
+        b = 0;
+        for (int v : vertices) {
+          if (part[v] == p) members[p][a++] = v;
+          else members[q][b++] = v;
+        }
+      }
+    }
+  }
+
+  /** Moves v to part to, keeping the arc counts between parts of refine() up to date **/
+  private void moveArcs(IntGraph g, long[] arcs, int v, int to) {
+    int from = part[v];
+    for (int i = 0; i < g.getDegree(v); i++) {
+      int pu = part[g.getNeighbor(v, i)];
+      arcs[from * k + pu]--;
+      arcs[pu * k + from]--;
+      arcs[to * k + pu]++;
+      arcs[pu * k + to]++;
+    }
+    part[v] = to;
+  }
+
+  /** Refines parts p and q on sub, vertex i of sub being vertices[i], or v itself when vertices is null **/
+  private void refinePair(IntGraph sub, int[] vertices, int p, int q, RefinementOptions options) {
+    int n = sub.getVertexCount();
+    int[] split = new int[n];
+    long weightP = 0, weightQ = 0;
+    for (int i = 0; i < n; i++) {
+      int v = (vertices != null) ? vertices[i] : i;
+      split[i] = (part[v] == p) ? 0 : 1;
+      if (split[i] == 0) weightP += sub.getVertexWeight(i);
+      else weightQ += sub.getVertexWeight(i);
+    }
+    if (weightP == 0 || weightQ == 0) return;
+    long before = PartitionState.cutCost(sub, split);
+    RefinementOptions pairOptions = new RefinementOptions()
+        .setMaxPasses(options.getMaxPasses())
+        .setMaxNonImprovingMoves(options.getMaxNonImprovingMoves())
+        .setBoundaryOnly(options.isBoundaryOnly())
+        .setImbalance(options.getImbalance())
+        .setListener(options.getListener())
+        .setFractionA((double) weightP / (weightP + weightQ));
+    FiducciaMattheysesAlgorithm fm = FiducciaMattheysesAlgorithm.process(sub, split, pairOptions);
+    int[] result = fm.getPartition();
+    for (int i = 0; i < n; i++) {
+      int v = (vertices != null) ? vertices[i] : i;
+      int to = (result[i] == 0) ? p : q;
+      if (to != part[v]) {
+        partWeight[part[v]] -= sub.getVertexWeight(i);
+        partWeight[to] += sub.getVertexWeight(i);
+        part[v] = to;
+      }
+    }
+    cut -= before - (long) fm.getCutCost();
+  }
+
+  /** Returns the sum of the costs of all edges between different parts **/
+  public double getCutCost() {
+    return cut;
+  }
+
+  /** Returns the total vertex weight of part p **/
+  public long getPartWeight(int p) {
+    return partWeight[p];
+  }
+
+  /** Writes the parts to path, see write(OutputStream) **/
+  public void write(String path) throws IOException {
+    OutputStream out = new FileOutputStream(path);
+    try {
+      write(out);
+    } finally {
+      out.close();
+    }
+  }
+
+  /** Writes the parts in the form the other algorithms print them, "Cluster i"
+   *  followed by the vertices of part i on one line, vertices named by their
+   *  0-based ids. The vertices are first bucketed by part with a counting sort,
+   *  so writing costs O(k + V) **/
+  public void write(OutputStream out) throws IOException {
+    // start[p] .. start[p+1]-1 are the positions of the vertices of part p in order
+    int[] start = new int[k + 1];
+    for (int v = 0; v < part.length; v++) if (part[v] >= 0) start[part[v] + 1]++;
+    for (int p = 0; p < k; p++) start[p + 1] += start[p];
+    int[] order = new int[start[k]];
+    int[] next = Arrays.copyOf(start, k);
+    for (int v = 0; v < part.length; v++) if (part[v] >= 0) order[next[part[v]]++] = v;
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"), 1 << 16);
+    for (int p = 0; p < k; p++) {
+      writer.write("Cluster " + (p + 1) + "\n[");
+      for (int i = start[p]; i < start[p + 1]; i++) {
+        if (i > start[p]) writer.write(", ");
+        writer.write("Vertex ");
+        writer.write(Integer.toString(order[i]));
+      }
+      writer.write("]\n");
+    }
+    writer.flush();
+  }
+}
@@ -0,0 +1,310 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Immutable graph in compressed sparse row form. The neighbors of vertex v
+ * are targets[offsets[v]] .. targets[offsets[v + 1] - 1], sorted by id, with
+ * the matching edge weights in weights[].
+ */
+public class CompactGraph implements IntGraph {
+
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] weights;
+    private final int[] vertexWeights;
+    private final String[] labels;
+
+    CompactGraph(int[] offsets, int[] targets, int[] weights, int[] vertexWeights, String[] labels){
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.vertexWeights = vertexWeights;
+        this.labels = labels;
+    }
+
+    /**
+     *
+     * @param g The graph to copy
+     * @return CompactGraph with one vertex per Vertex of g, labelled and weighted the same way
+     */
+    public static CompactGraph fromGraph(Graph g){
+        HashMap<String, Integer> ids = new HashMap<String, Integer>();
+        Builder builder = new Builder();
+        for(Vertex v: g.getVertices()){
+            int id = builder.addVertex(v.getLabel());
+            ids.put(v.getLabel(), id);
+            if(v.getWeight() != 1){
+                builder.setVertexWeight(id, v.getWeight());
+            }
+        }
+        for(Edge e: g.getEdges()){
+            builder.addEdge(ids.get(e.getOne().getLabel()), ids.get(e.getTwo().getLabel()), e.getWeight());
+        }
+        return builder.build();
+    }
+
+    /**
+     *
+     * @param g The graph to take vertices from
+     * @param vertices Vertex ids of g in increasing order
+     * @return CompactGraph of the given vertices and the edges among them,
+     * vertex i being vertices[i] of g with its weight
+     */
+    public static CompactGraph induced(IntGraph g, int[] vertices){
+        Builder builder = new Builder(vertices.length);
+        for(int i = 0; i < vertices.length; i++){
+            int v = vertices[i];
+            if(g.getVertexWeight(v) != 1){
+                builder.setVertexWeight(i, g.getVertexWeight(v));
+            }
+            for(int k = 0; k < g.getDegree(v); k++){
+                int u = g.getNeighbor(v, k);
+                int j = (u > v) ? Arrays.binarySearch(vertices, i + 1, vertices.length, u) : -1;
+                if(j >= 0){
+                    builder.addEdge(i, j, g.getNeighborWeight(v, k));
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    public int getVertexCount(){
+        return offsets.length - 1;
+    }
+
+    public int getEdgeCount(){
+        return targets.length / 2;
+    }
+
+    public int getDegree(int v){
+        return offsets[v + 1] - offsets[v];
+    }
+
+    public int getNeighbor(int v, int index){
+        return targets[offsets[v] + index];
+    }
+
+    public int getNeighborWeight(int v, int index){
+        return weights[offsets[v] + index];
+    }
+
+    public int getVertexWeight(int v){
+        return (vertexWeights != null) ? vertexWeights[v] : 1;
+    }
+
+    public String getLabel(int v){
+        return (labels != null && labels[v] != null) ? labels[v] : String.valueOf(v);
+    }
+
+    /**
+     *
+     * @return int Weight of the edge {u, v}, or 0 if there is no such edge
+     */
+    public int getEdgeWeight(int u, int v){
+        int i = Arrays.binarySearch(targets, offsets[u], offsets[u + 1], v);
+        return (i >= 0) ? weights[i] : 0;
+    }
+
+    /**
+     *
+     * @return this graph represent as a string
+     */
+    public String toString(){
+        return "CompactGraph(" + getVertexCount() + " vertices, " + getEdgeCount() + " edges)";
+    }
+
+    /**
+     * Collects edges in insertion order and turns them into a CompactGraph.
+     * Self loops are ignored and for repeated edges the first weight wins,
+     * the same way Graph.addEdge treats them, unless sumRepeatedEdges is set.
+     */
+    public static class Builder {
+
+        private int vertexCount;
+        private String[] labels;
+        private int[] vertexWeights;
+        private boolean sumRepeatedEdges;
+        private int[] from = new int[16];
+        private int[] to = new int[16];
+        private int[] weight = new int[16];
+        private int size;
+
+        public Builder(){
+            this(0);
+        }
+
+        /**
+         * @param vertexCount Number of vertices known up front
+         */
+        public Builder(int vertexCount){
+            this.vertexCount = vertexCount;
+        }
+
+        /**
+         * Adds a vertex with the given label
+         * @return int The id of the new vertex
+         */
+        public int addVertex(String label){
+            int id = vertexCount++;
+            setLabel(id, label);
+            return id;
+        }
+
+        /**
+         * Labels vertex v, growing the vertex count if needed
+         */
+        public void setLabel(int v, String label){
+            ensureVertex(v);
+            if(labels == null){
+                labels = new String[Math.max(16, vertexCount)];
+            } else if(labels.length <= v){
+                labels = Arrays.copyOf(labels, Math.max(v + 1, labels.length * 2));
+            }
+            labels[v] = label;
+        }
+
+        /**
+         * Sets the weight of vertex v, growing the vertex count if needed
+         */
+        public void setVertexWeight(int v, int weight){
+            ensureVertex(v);
+            if(vertexWeights == null){
+                vertexWeights = new int[Math.max(16, vertexCount)];
+                Arrays.fill(vertexWeights, 1);
+            } else if(vertexWeights.length <= v){
+                int length = vertexWeights.length;
+                vertexWeights = Arrays.copyOf(vertexWeights, Math.max(v + 1, length * 2));
+                Arrays.fill(vertexWeights, length, vertexWeights.length, 1);
+            }
+            vertexWeights[v] = weight;
+        }
+
+        /**
+         * Repeated edges are merged into one edge carrying the sum of their weights
+         */
+        public Builder sumRepeatedEdges(){
+            this.sumRepeatedEdges = true;
+            return this;
+        }
+
+        /**
+         * Makes sure vertex v exists
+         */
+        public void ensureVertex(int v){
+            if(v < 0){
+                throw new IllegalArgumentException("Negative vertex id " + v);
+            }
+            if(v >= vertexCount){
+                vertexCount = v + 1;
+            }
+        }
+
+        /**
+         * Add edge with weight = 1
+         */
+        public void addEdge(int one, int two){
+            addEdge(one, two, 1);
+        }
+
+        /**
+         * Add edge with given weight
+         */
+        public void addEdge(int one, int two, int w){
+            ensureVertex(one);
+            ensureVertex(two);
+            if(one == two){
+                return;
+            }
+            if(size == from.length){
+                int capacity = size * 2;
+                from = Arrays.copyOf(from, capacity);
+                to = Arrays.copyOf(to, capacity);
+                weight = Arrays.copyOf(weight, capacity);
+            }
+            from[size] = one;
+            to[size] = two;
+            weight[size] = w;
+            size++;
+        }
+
+        /**
+         *
+         * @return CompactGraph holding every edge added so far
+         */
+        public CompactGraph build(){
+            int n = vertexCount;
+            int arcs = size * 2;
+            // both directions of every edge, in insertion order
+            int[] src = new int[arcs];
+            int[] dst = new int[arcs];
+            int[] wt = new int[arcs];
+            for(int i = 0; i < size; i++){
+                src[2 * i] = from[i];
+                dst[2 * i] = to[i];
+                wt[2 * i] = weight[i];
+                src[2 * i + 1] = to[i];
+                dst[2 * i + 1] = from[i];
+                wt[2 * i + 1] = weight[i];
+            }
+            // two stable counting sorts: by target, then by source
+            int[] bySrc = new int[arcs];
+            int[] byDst = new int[arcs];
+            int[] count = new int[n + 1];
+            for(int i = 0; i < arcs; i++){
+                count[dst[i] + 1]++;
+            }
+            for(int v = 0; v < n; v++){
+                count[v + 1] += count[v];
+            }
+            for(int i = 0; i < arcs; i++){
+                byDst[count[dst[i]]++] = i;
+            }
+            int[] offsets = new int[n + 1];
+            for(int i = 0; i < arcs; i++){
+                offsets[src[i] + 1]++;
+            }
+            for(int v = 0; v < n; v++){
+                offsets[v + 1] += offsets[v];
+            }
+            int[] next = Arrays.copyOf(offsets, n);
+            for(int i = 0; i < arcs; i++){
+                int arc = byDst[i];
+                bySrc[next[src[arc]]++] = arc;
+            }
+            // merge repeated edges, keeping the first one inserted or the sum
+            int[] targets = new int[arcs];
+            int[] weights = new int[arcs];
+            int k = 0;
+            int start = 0;
+            for(int v = 0; v < n; v++){
+                int end = offsets[v + 1];
+                offsets[v] = k;
+                for(int i = start; i < end; i++){
+                    int arc = bySrc[i];
+                    if(k > offsets[v] && targets[k - 1] == dst[arc]){
+                        if(sumRepeatedEdges){
+                            weights[k - 1] += wt[arc];
+                        }
+                        continue;
+                    }
+                    targets[k] = dst[arc];
+                    weights[k] = wt[arc];
+                    k++;
+                }
+                start = end;
+            }
+            offsets[n] = k;
+            String[] l = (labels == null) ? null : Arrays.copyOf(labels, n);
+            int[] vw = null;
+            if(vertexWeights != null){
+                vw = Arrays.copyOf(vertexWeights, n);
+                for(int v = Math.min(n, vertexWeights.length); v < n; v++){
+                    vw[v] = 1;
+                }
+            }
+            return new CompactGraph(offsets, Arrays.copyOf(targets, k), Arrays.copyOf(weights, k), vw, l);
+        }
+    }
+}
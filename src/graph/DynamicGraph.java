@@ -0,0 +1,250 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Mutable graph over dense int ids, for graphs that keep changing. Every
+ * vertex keeps its neighbors and edge weights in arrays of its own that grow
+ * as needed, so adding or removing an edge costs O(degree).
+ *
+ * Ids stay stable: a removed vertex keeps its id as an isolated placeholder
+ * of weight 0, and new vertices always get the next id.
+ */
+public class DynamicGraph implements IntGraph {
+
+    private static final int[] NONE = new int[0];
+
+    private int vertexCount;
+    private int edgeCount;
+    // neighbors of v are targets[v][0 .. degree[v] - 1], in no particular order
+    private int[][] targets;
+    private int[][] weights;
+    private int[] degree;
+    private int[] vertexWeights;
+    private String[] labels;
+    private boolean[] removed;
+    private final HashMap<String, Integer> ids;
+
+    public DynamicGraph(){
+        targets = new int[16][];
+        weights = new int[16][];
+        degree = new int[16];
+        vertexWeights = new int[16];
+        labels = new String[16];
+        removed = new boolean[16];
+        ids = new HashMap<String, Integer>();
+    }
+
+    /**
+     *
+     * @param g The graph to copy, vertex v of g becoming vertex v of this graph
+     */
+    public DynamicGraph(IntGraph g){
+        this();
+        int n = g.getVertexCount();
+        for(int v = 0; v < n; v++){
+            addVertex(g.getLabel(v), g.getVertexWeight(v));
+        }
+        for(int v = 0; v < n; v++){
+            int d = g.getDegree(v);
+            targets[v] = new int[d];
+            weights[v] = new int[d];
+            for(int i = 0; i < d; i++){
+                targets[v][i] = g.getNeighbor(v, i);
+                weights[v][i] = g.getNeighborWeight(v, i);
+            }
+            degree[v] = d;
+            edgeCount += d;
+        }
+        edgeCount /= 2;
+    }
+
+    /**
+     * Adds a vertex of weight 1
+     * @return id of the new vertex
+     */
+    public int addVertex(String label){
+        return addVertex(label, 1);
+    }
+
+    /**
+     * Adds a vertex with the given label and weight
+     * @return id of the new vertex
+     */
+    public int addVertex(String label, int weight){
+        if(label != null && ids.containsKey(label)){
+            throw new IllegalArgumentException("Vertex " + label + " already exists");
+        }
+        if(vertexCount == degree.length){
+            int capacity = 2 * vertexCount;
+            targets = Arrays.copyOf(targets, capacity);
+            weights = Arrays.copyOf(weights, capacity);
+            degree = Arrays.copyOf(degree, capacity);
+            vertexWeights = Arrays.copyOf(vertexWeights, capacity);
+            labels = Arrays.copyOf(labels, capacity);
+            removed = Arrays.copyOf(removed, capacity);
+        }
+        int v = vertexCount++;
+        targets[v] = NONE;
+        weights[v] = NONE;
+        vertexWeights[v] = weight;
+        labels[v] = label;
+        if(label != null){
+            ids.put(label, v);
+        }
+        return v;
+    }
+
+    /**
+     * Removes all edges of v and leaves it behind as an isolated vertex of
+     * weight 0, so the ids of the other vertices do not change
+     */
+    public void removeVertex(int v){
+        checkVertex(v);
+        while(degree[v] > 0){
+            removeEdge(v, targets[v][degree[v] - 1]);
+        }
+        vertexWeights[v] = 0;
+        removed[v] = true;
+        if(labels[v] != null){
+            ids.remove(labels[v]);
+        }
+    }
+
+    /**
+     *
+     * @return true if v was removed by removeVertex
+     */
+    public boolean isRemoved(int v){
+        return removed[v];
+    }
+
+    /**
+     * Adds edge {u, v} with the given weight
+     * @return false if it is a self loop or the edge already exists
+     */
+    public boolean addEdge(int u, int v, int weight){
+        checkVertex(u);
+        checkVertex(v);
+        if(u == v || indexOf(u, v) >= 0){
+            return false;
+        }
+        append(u, v, weight);
+        append(v, u, weight);
+        edgeCount++;
+        return true;
+    }
+
+    /**
+     * Removes edge {u, v}
+     * @return the weight of the removed edge, or 0 if there is no such edge
+     */
+    public int removeEdge(int u, int v){
+        int i = indexOf(u, v);
+        if(i < 0){
+            return 0;
+        }
+        int weight = weights[u][i];
+        delete(u, i);
+        delete(v, indexOf(v, u));
+        edgeCount--;
+        return weight;
+    }
+
+    /**
+     *
+     * @return int Weight of the edge {u, v}, or 0 if there is no such edge
+     */
+    public int getEdgeWeight(int u, int v){
+        int i = indexOf(u, v);
+        return (i >= 0) ? weights[u][i] : 0;
+    }
+
+    public void setVertexWeight(int v, int weight){
+        checkVertex(v);
+        vertexWeights[v] = weight;
+    }
+
+    /**
+     *
+     * @return id of the vertex with the given label, or -1
+     */
+    public int getId(String label){
+        Integer id = ids.get(label);
+        return (id != null) ? id : -1;
+    }
+
+    public int getVertexCount(){
+        return vertexCount;
+    }
+
+    public int getEdgeCount(){
+        return edgeCount;
+    }
+
+    public int getDegree(int v){
+        return degree[v];
+    }
+
+    public int getNeighbor(int v, int index){
+        return targets[v][index];
+    }
+
+    public int getNeighborWeight(int v, int index){
+        return weights[v][index];
+    }
+
+    public int getVertexWeight(int v){
+        return vertexWeights[v];
+    }
+
+    public String getLabel(int v){
+        return (labels[v] != null) ? labels[v] : String.valueOf(v);
+    }
+
+    /**
+     *
+     * @return this graph represent as a string
+     */
+    public String toString(){
+        return "DynamicGraph(" + getVertexCount() + " vertices, " + getEdgeCount() + " edges)";
+    }
+
+    private void checkVertex(int v){
+        if(v < 0 || v >= vertexCount || removed[v]){
+            throw new IllegalArgumentException("No vertex " + v);
+        }
+    }
+
+    private int indexOf(int u, int v){
+        int[] t = targets[u];
+        for(int i = 0; i < degree[u]; i++){
+            if(t[i] == v){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void append(int u, int v, int weight){
+        int d = degree[u];
+        if(d == targets[u].length){
+            int capacity = Math.max(4, 2 * d);
+            targets[u] = Arrays.copyOf(targets[u], capacity);
+            weights[u] = Arrays.copyOf(weights[u], capacity);
+        }
+        targets[u][d] = v;
+        weights[u][d] = weight;
+        degree[u] = d + 1;
+    }
+
+    /**
+     * Removes neighbor i of u, moving the last neighbor into its place
+     */
+    private void delete(int u, int i){
+        int last = --degree[u];
+        targets[u][i] = targets[u][last];
+        weights[u][i] = weights[u][last];
+    }
+}
@@ -98,11 +98,12 @@ public class Edge implements Comparable<Edge> {
 
     /**
      *
-     * @return hash code for this Edge - integer
+     * @return hash code for this Edge - integer, combining the labels
+     * without concatenating them, so equal edges hash alike
      */
 
     public int hashCode(){
-        return (one.getLabel() + two.getLabel()).hashCode();
+        return 31 * one.hashCode() + two.hashCode();
     }
     
     /**
@@ -0,0 +1,142 @@
+package graph;
+
+import java.util.Collection;
+
+/**
+ * Open addressing hash map from a packed pair of vertex ids to the Edge
+ * joining them. Keys and edges live in two parallel arrays probed linearly,
+ * so lookups neither box the key nor allocate.
+ */
+class EdgeIndex {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private Edge[] values;
+    private int size;
+
+    EdgeIndex(){
+        keys = new long[MIN_CAPACITY];
+        values = new Edge[MIN_CAPACITY];
+    }
+
+    /**
+     *
+     * @return key of the edge between vertex ids u and v, the same both ways round
+     */
+    static long key(int u, int v){
+        return (u < v) ? ((long) u << 32) | v : ((long) v << 32) | u;
+    }
+
+    int size(){
+        return size;
+    }
+
+    /**
+     *
+     * @return the edge stored under key, or null
+     */
+    Edge get(long key){
+        int mask = keys.length - 1;
+        for(int slot = slot(key, mask); values[slot] != null; slot = (slot + 1) & mask){
+            if(keys[slot] == key){
+                return values[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stores e under key
+     * @return the edge stored before, or null
+     */
+    Edge put(long key, Edge e){
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        for(; values[slot] != null; slot = (slot + 1) & mask){
+            if(keys[slot] == key){
+                Edge old = values[slot];
+                values[slot] = e;
+                return old;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = e;
+        // keep the table at most half full
+        if(++size * 2 > keys.length){
+            resize(keys.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * Removes the edge stored under key, shifting later entries of the probe
+     * run back so no tombstones are needed
+     * @return the removed edge, or null
+     */
+    Edge remove(long key){
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        for(; values[slot] != null; slot = (slot + 1) & mask){
+            if(keys[slot] == key){
+                break;
+            }
+        }
+        Edge removed = values[slot];
+        if(removed == null){
+            return null;
+        }
+        int hole = slot;
+        for(int next = (hole + 1) & mask; values[next] != null; next = (next + 1) & mask){
+            int home = slot(keys[next], mask);
+            // move the entry into the hole unless its home lies after the hole
+            if(((next - home) & mask) >= ((next - hole) & mask)){
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        values[hole] = null;
+        size--;
+        return removed;
+    }
+
+    /**
+     * Adds every stored edge to target
+     */
+    void addValuesTo(Collection<Edge> target){
+        for(Edge e: values){
+            if(e != null){
+                target.add(e);
+            }
+        }
+    }
+
+    private void resize(int capacity){
+        long[] oldKeys = keys;
+        Edge[] oldValues = values;
+        keys = new long[capacity];
+        values = new Edge[capacity];
+        int mask = capacity - 1;
+        for(int i = 0; i < oldKeys.length; i++){
+            if(oldValues[i] != null){
+                int slot = slot(oldKeys[i], mask);
+                while(values[slot] != null){
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int slot(long key, int mask){
+        // murmur3 finalizer, spreads consecutive ids over the table
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+}
@@ -4,12 +4,16 @@ import java.util.*;
 public class Graph {
 
     private HashMap<String, Vertex> vertices;
-    private HashMap<Integer, Edge> edges;
+    // edges keyed by the packed ids of their vertices, see EdgeIndex.key
+    private EdgeIndex edges;
+    // id of every vertex label seen, assigned in order and never reused
+    private HashMap<String, Integer> ids;
      
 
     public Graph(){
         this.vertices = new HashMap<String, Vertex>();
-        this.edges = new HashMap<Integer, Edge>();
+        this.edges = new EdgeIndex();
+        this.ids = new HashMap<String, Integer>();
     }
     
     /**
@@ -18,10 +22,12 @@ public class Graph {
     public Graph(ArrayList<Vertex> vertices){
     	
         this.vertices = new HashMap<String, Vertex>();
-        this.edges = new HashMap<Integer, Edge>();       
+        this.edges = new EdgeIndex();
+        this.ids = new HashMap<String, Integer>();
 
         for(Vertex v: vertices){
             this.vertices.put(v.getLabel(), v);
+            idOf(v);
         }      
 
     }     
@@ -42,17 +48,12 @@ public class Graph {
             return false;  
         }        
         //ensures the Edge is not in the Graph
-        Edge e = new Edge(one, two, weight);
-
-        if(edges.containsKey(e.hashCode())){
+        long key = EdgeIndex.key(idOf(one), idOf(two));
+        if(edges.get(key) != null){
             return false;
         }
-        //and that the Edge isn't already incident to one of the vertices
-        
-        else if(one.containsNeighbor(e) || two.containsNeighbor(e)){
-            return false;
-        }  
-        edges.put(e.hashCode(), e);
+        Edge e = new Edge(one, two, weight);
+        edges.put(key, e);
         one.addNeighbor(e);
         two.addNeighbor(e);
         return true;
@@ -65,7 +66,7 @@ public class Graph {
         if(e.getOne() == null || e.getTwo() == null){
             return false;
         }      
-        return this.edges.containsKey(e.hashCode());
+        return findConnected(e.getOne(), e.getTwo()) != null;
     }
    
     /**
@@ -74,7 +75,8 @@ public class Graph {
     public Edge removeEdge(Edge e){
        e.getOne().removeNeighbor(e);
        e.getTwo().removeNeighbor(e);
-       return this.edges.remove(e.hashCode());
+       long key = key(e.getOne(), e.getTwo());
+       return (key < 0) ? null : this.edges.remove(key);
     } 
 
     /**
@@ -108,6 +110,7 @@ public class Graph {
         }
         
         vertices.put(vertex.getLabel(), vertex);
+        idOf(vertex);
         return true;
     }
 
@@ -136,7 +139,17 @@ public class Graph {
      * @return Set<Edge> The Edges of this graph
      */
     public Set<Edge> getEdges(){
-        return new HashSet<Edge>(this.edges.values());
+        HashSet<Edge> set = new HashSet<Edge>(this.edges.size() * 2);
+        this.edges.addValuesTo(set);
+        return set;
+    }
+
+    /**
+     *
+     * @return int The number of Edges of this graph
+     */
+    public int getEdgeCount(){
+        return this.edges.size();
     }
     
     /**
@@ -149,13 +162,38 @@ public class Graph {
     
     /**
     *
-    * @return Edge Search for edge in the graph
+    * @return Edge The edge of the graph between v1 and v2 with its weight,
+    * or null. Takes constant time and allocates nothing.
     */
     public Edge findConnected(Vertex v1, Vertex v2) {
-    	Edge edge = new Edge(v1, v2);
-        if (!this.getEdges().contains(edge)) 
-          return null;
-        return edge;
+        long key = key(v1, v2);
+        return (key < 0) ? null : this.edges.get(key);
       }
+
+    /**
+     *
+     * @return id of the vertex label, assigning the next one on first sight
+     */
+    private int idOf(Vertex v){
+        Integer id = ids.get(v.getLabel());
+        if(id == null){
+            id = ids.size();
+            ids.put(v.getLabel(), id);
+        }
+        return id;
+    }
+
+    /**
+     *
+     * @return edge key of the two vertices, or -1 when either was never seen
+     */
+    private long key(Vertex one, Vertex two){
+        Integer u = ids.get(one.getLabel());
+        Integer v = ids.get(two.getLabel());
+        if(u == null || v == null){
+            return -1;
+        }
+        return EdgeIndex.key(u, v);
+    }
 }
 
@@ -0,0 +1,158 @@
+package graph;
+
+import java.util.Random;
+
+/**
+ * Reproducible synthetic graphs for benchmarks and experiments. The same
+ * parameters and seed always give the same graph.
+ */
+public class GraphGenerator {
+
+    private GraphGenerator(){
+    }
+
+    /**
+     *
+     * @return CompactGraph of a width x height grid, vertex x + y * width
+     * joined to its right and lower neighbors
+     */
+    public static CompactGraph grid(int width, int height){
+        CompactGraph.Builder builder = new CompactGraph.Builder(width * height);
+        for(int y = 0; y < height; y++){
+            for(int x = 0; x < width; x++){
+                int v = x + y * width;
+                if(x + 1 < width){
+                    builder.addEdge(v, v + 1);
+                }
+                if(y + 1 < height){
+                    builder.addEdge(v, v + width);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Random geometric graph: n points uniform in the unit square, joined when
+     * closer than radius. Points are bucketed into cells of side radius, so only
+     * neighboring cells are compared.
+     */
+    public static CompactGraph randomGeometric(int n, double radius, long seed){
+        Random random = new Random(seed);
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for(int v = 0; v < n; v++){
+            x[v] = random.nextDouble();
+            y[v] = random.nextDouble();
+        }
+        int cells = Math.max(1, Math.min((int) (1 / radius), 1 << 15));
+        // vertices sorted by cell, cellStart[c] .. cellStart[c + 1] - 1
+        int[] cellStart = new int[cells * cells + 1];
+        int[] cellOf = new int[n];
+        for(int v = 0; v < n; v++){
+            int cx = Math.min(cells - 1, (int) (x[v] * cells));
+            int cy = Math.min(cells - 1, (int) (y[v] * cells));
+            cellOf[v] = cx + cy * cells;
+            cellStart[cellOf[v] + 1]++;
+        }
+        for(int c = 0; c < cells * cells; c++){
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] next = new int[cells * cells];
+        System.arraycopy(cellStart, 0, next, 0, next.length);
+        int[] byCell = new int[n];
+        for(int v = 0; v < n; v++){
+            byCell[next[cellOf[v]]++] = v;
+        }
+
+        CompactGraph.Builder builder = new CompactGraph.Builder(n);
+        double r2 = radius * radius;
+        for(int v = 0; v < n; v++){
+            int cx = cellOf[v] % cells;
+            int cy = cellOf[v] / cells;
+            for(int dy = -1; dy <= 1; dy++){
+                for(int dx = -1; dx <= 1; dx++){
+                    int nx = cx + dx, ny = cy + dy;
+                    if(nx < 0 || ny < 0 || nx >= cells || ny >= cells){
+                        continue;
+                    }
+                    int c = nx + ny * cells;
+                    for(int i = cellStart[c]; i < cellStart[c + 1]; i++){
+                        int u = byCell[i];
+                        double ddx = x[u] - x[v], ddy = y[u] - y[v];
+                        if(u > v && ddx * ddx + ddy * ddy < r2){
+                            builder.addEdge(v, u);
+                        }
+                    }
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Erdos-Renyi G(n, p) graph, every pair joined with probability p. Skips
+     * over absent pairs geometrically, so the cost is O(n + edges), not O(n^2).
+     */
+    public static CompactGraph erdosRenyi(int n, double p, long seed){
+        Random random = new Random(seed);
+        CompactGraph.Builder builder = new CompactGraph.Builder(n);
+        if(p <= 0){
+            return builder.build();
+        }
+        double logq = Math.log(1 - Math.min(p, 1 - 1e-12));
+        long v = 1, w = -1;
+        while(v < n){
+            w += 1 + (long) Math.floor(Math.log(1 - random.nextDouble()) / logq);
+            while(w >= v && v < n){
+                w -= v;
+                v++;
+            }
+            if(v < n){
+                builder.addEdge((int) v, (int) w);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * R-MAT power law graph with 2^scale vertices and edgeFactor * 2^scale
+     * edge draws, each recursing into the quadrants of the adjacency matrix with
+     * probabilities a, b, c and 1 - a - b - c. Repeated edges and self loops
+     * are dropped, so the graph has somewhat fewer edges than draws.
+     */
+    public static CompactGraph rmat(int scale, int edgeFactor, double a, double b, double c, long seed){
+        if(scale < 0 || scale > 30){
+            throw new IllegalArgumentException("Scale must be between 0 and 30");
+        }
+        Random random = new Random(seed);
+        int n = 1 << scale;
+        long edges = (long) edgeFactor * n;
+        CompactGraph.Builder builder = new CompactGraph.Builder(n);
+        for(long e = 0; e < edges; e++){
+            int u = 0, v = 0;
+            for(int bit = scale - 1; bit >= 0; bit--){
+                double r = random.nextDouble();
+                if(r < a){
+                    continue;
+                } else if(r < a + b){
+                    v |= 1 << bit;
+                } else if(r < a + b + c){
+                    u |= 1 << bit;
+                } else {
+                    u |= 1 << bit;
+                    v |= 1 << bit;
+                }
+            }
+            builder.addEdge(u, v);
+        }
+        return builder.build();
+    }
+
+    /**
+     * R-MAT with the Graph500 probabilities a = 0.57, b = c = 0.19
+     */
+    public static CompactGraph rmat(int scale, int edgeFactor, long seed){
+        return rmat(scale, edgeFactor, 0.57, 0.19, 0.19, seed);
+    }
+}
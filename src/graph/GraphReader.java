@@ -0,0 +1,305 @@
+package graph;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Streaming readers that build a CompactGraph in one pass over the input.
+ * Numbers are parsed straight from a byte buffer, so no line Strings or
+ * token arrays are created and the whole input is never held in memory.
+ */
+public class GraphReader {
+
+    private GraphReader(){
+    }
+
+    /**
+     * Reads a graph choosing the format by file extension: .graph and .metis
+     * are METIS files, .edges, .el and .edgelist are edge lists, .bin files
+     * written by MappedGraph.write are mapped and anything else is an
+     * adjacency matrix
+     */
+    public static IntGraph read(String path) throws IOException{
+        String name = path.toLowerCase();
+        if(name.endsWith(".bin")){
+            return MappedGraph.open(path);
+        }
+        if(name.endsWith(".graph") || name.endsWith(".metis")){
+            return readMetis(path);
+        }
+        // large text files are parsed on all cores
+        if(name.endsWith(".edges") || name.endsWith(".el") || name.endsWith(".edgelist")){
+            return ParallelGraphReader.readEdgeList(path);
+        }
+        return ParallelGraphReader.readAdjacencyMatrix(path);
+    }
+
+    public static CompactGraph readEdgeList(String path) throws IOException{
+        InputStream in = new FileInputStream(path);
+        try{
+            return readEdgeList(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads one edge per line as "one two [weight]", the numbers being vertex ids
+     * and the weight defaulting to 1. Lines starting with # or % are comments.
+     */
+    public static CompactGraph readEdgeList(InputStream in) throws IOException{
+        Tokens tokens = new Tokens(in);
+        CompactGraph.Builder builder = new CompactGraph.Builder();
+        while(!tokens.isEnd()){
+            if(tokens.isCommentOrBlankLine()){
+                tokens.skipLine();
+                continue;
+            }
+            int one = tokens.readInt();
+            int two = tokens.readInt();
+            int weight = tokens.hasNextOnLine() ? tokens.readInt() : 1;
+            builder.addEdge(one, two, weight);
+            tokens.skipLine();
+        }
+        return builder.build();
+    }
+
+    public static CompactGraph readMetis(String path) throws IOException{
+        InputStream in = new FileInputStream(path);
+        try{
+            return readMetis(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads the METIS graph format: a header "n m [fmt [ncon]]" followed by one
+     * line per vertex listing its 1-based neighbors, preceded by ncon vertex
+     * weights when fmt is 1x and each followed by the edge weight when fmt is x1.
+     * Only the first vertex weight is kept. Lines starting with % are comments.
+     */
+    public static CompactGraph readMetis(InputStream in) throws IOException{
+        MetisStream stream = new MetisStream(in);
+        CompactGraph.Builder builder = new CompactGraph.Builder(stream.getVertexCount());
+        while(stream.next()){
+            int v = stream.getVertex();
+            if(stream.getVertexWeight() != 1){
+                builder.setVertexWeight(v, stream.getVertexWeight());
+            }
+            for(int i = 0; i < stream.getDegree(); i++){
+                int u = stream.getNeighbor(i);
+                // every edge is listed by both of its ends
+                if(u > v){
+                    builder.addEdge(v, u, stream.getNeighborWeight(i));
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    public static Hypergraph readHmetis(String path) throws IOException{
+        InputStream in = new FileInputStream(path);
+        try{
+            return readHmetis(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads the hMETIS hypergraph format: a header "nets n [fmt]" followed by one
+     * line per net listing its 1-based pins, preceded by the net weight when fmt
+     * is x1, and then one line per vertex with its weight when fmt is 1x.
+     * Lines starting with % are comments.
+     */
+    public static Hypergraph readHmetis(InputStream in) throws IOException{
+        Tokens tokens = new Tokens(in);
+        tokens.skipComments();
+        int netCount = tokens.readInt();
+        int vertexCount = tokens.readInt();
+        int format = tokens.hasNextOnLine() ? tokens.readInt() : 0;
+        tokens.skipLine();
+        Hypergraph.Builder builder = new Hypergraph.Builder(vertexCount);
+        int[] pins = new int[16];
+        for(int net = 0; net < netCount; net++){
+            tokens.skipComments();
+            if(tokens.isEnd()){
+                throw new IOException("Expected " + netCount + " net lines but found " + net);
+            }
+            int weight = (format % 10 == 1) ? tokens.readInt() : 1;
+            int size = 0;
+            while(tokens.hasNextOnLine()){
+                int v = tokens.readInt() - 1;
+                if(v < 0 || v >= vertexCount){
+                    throw new IOException("Net " + (net + 1) + " has pin " + (v + 1) + " out of range");
+                }
+                if(size == pins.length){
+                    pins = Arrays.copyOf(pins, 2 * size);
+                }
+                pins[size++] = v;
+            }
+            tokens.skipLine();
+            builder.addNet(Arrays.copyOf(pins, size), weight);
+        }
+        if((format / 10) % 10 == 1){
+            for(int v = 0; v < vertexCount; v++){
+                tokens.skipComments();
+                builder.setVertexWeight(v, tokens.readInt());
+                tokens.skipLine();
+            }
+        }
+        return builder.build();
+    }
+
+    public static CompactGraph readAdjacencyMatrix(String path) throws IOException{
+        InputStream in = new FileInputStream(path);
+        try{
+            return readAdjacencyMatrix(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads a matrix with one row per line, the cell in row i and column j being
+     * the weight of the edge between vertices i and j or 0 for no edge.
+     */
+    public static CompactGraph readAdjacencyMatrix(InputStream in) throws IOException{
+        Tokens tokens = new Tokens(in);
+        CompactGraph.Builder builder = new CompactGraph.Builder();
+        int row = 0;
+        while(!tokens.isEnd()){
+            if(tokens.isCommentOrBlankLine()){
+                tokens.skipLine();
+                continue;
+            }
+            builder.ensureVertex(row);
+            for(int column = 0; tokens.hasNextOnLine(); column++){
+                int weight = tokens.readInt();
+                if(weight != 0){
+                    builder.addEdge(row, column, weight);
+                }
+            }
+            tokens.skipLine();
+            row++;
+        }
+        return builder.build();
+    }
+
+    /**
+     * Reads integers from a byte stream line by line
+     */
+    static class Tokens {
+
+        private final InputStream in;
+        private final byte[] buffer = new byte[1 << 16];
+        private int position, length;
+        private long line = 1;
+
+        Tokens(InputStream in){
+            this.in = in;
+        }
+
+        /**
+         *
+         * @return the next byte without consuming it, -1 at the end of the input
+         */
+        private int peek() throws IOException{
+            if(position == length){
+                length = in.read(buffer, 0, buffer.length);
+                position = 0;
+                if(length <= 0){
+                    length = 0;
+                    return -1;
+                }
+            }
+            return buffer[position];
+        }
+
+        private void skipBlanks() throws IOException{
+            int c = peek();
+            while(c == ' ' || c == '\t' || c == '\r' || c == ','){
+                position++;
+                c = peek();
+            }
+        }
+
+        boolean isEnd() throws IOException{
+            return peek() < 0;
+        }
+
+        /**
+         *
+         * @return true if there is another number before the end of the line
+         */
+        boolean hasNextOnLine() throws IOException{
+            skipBlanks();
+            int c = peek();
+            return c >= 0 && c != '\n';
+        }
+
+        boolean isCommentOrBlankLine() throws IOException{
+            skipBlanks();
+            int c = peek();
+            return c < 0 || c == '\n' || c == '#' || c == '%';
+        }
+
+        /**
+         * skips lines starting with # or %
+         */
+        void skipComments() throws IOException{
+            skipBlanks();
+            int c = peek();
+            while(c == '#' || c == '%'){
+                skipLine();
+                skipBlanks();
+                c = peek();
+            }
+        }
+
+        /**
+         * moves past the end of the current line
+         */
+        void skipLine() throws IOException{
+            int c = peek();
+            while(c >= 0 && c != '\n'){
+                position++;
+                c = peek();
+            }
+            if(c == '\n'){
+                position++;
+                line++;
+            }
+        }
+
+        int readInt() throws IOException{
+            skipBlanks();
+            int c = peek();
+            boolean negative = c == '-';
+            if(negative){
+                position++;
+                c = peek();
+            }
+            if(c < '0' || c > '9'){
+                throw new IOException("Expected a number on line " + line);
+            }
+            long value = 0;
+            while(c >= '0' && c <= '9'){
+                value = value * 10 + (c - '0');
+                if(value > Integer.MAX_VALUE + 1L){
+                    throw new IOException("Number too large on line " + line);
+                }
+                position++;
+                c = peek();
+            }
+            value = negative ? -value : value;
+            if(value > Integer.MAX_VALUE){
+                throw new IOException("Number too large on line " + line);
+            }
+            return (int) value;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package graph;
+
+import java.util.Arrays;
+
+/**
+ * Immutable hypergraph in flat arrays. A net joins any number of vertices,
+ * its pins, so a circuit netlist or a message sent to many parties is one
+ * net instead of a clique of edges. The pins of net n are
+ * pins[netOffsets[n]] .. pins[netOffsets[n + 1] - 1], sorted by id, and the
+ * nets of vertex v are nets[vertexOffsets[v]] .. nets[vertexOffsets[v + 1] - 1].
+ */
+public class Hypergraph {
+
+    private final int[] netOffsets;
+    private final int[] pins;
+    private final int[] netWeights;
+    private final int[] vertexOffsets;
+    private final int[] nets;
+    private final int[] vertexWeights;
+    private final String[] labels;
+
+    private Hypergraph(int[] netOffsets, int[] pins, int[] netWeights, int[] vertexOffsets, int[] nets,
+            int[] vertexWeights, String[] labels){
+        this.netOffsets = netOffsets;
+        this.pins = pins;
+        this.netWeights = netWeights;
+        this.vertexOffsets = vertexOffsets;
+        this.nets = nets;
+        this.vertexWeights = vertexWeights;
+        this.labels = labels;
+    }
+
+    /**
+     *
+     * @param g The graph to copy
+     * @return Hypergraph with the vertices of g and one net of two pins per edge,
+     * whose cut is the cut of the graph
+     */
+    public static Hypergraph fromGraph(IntGraph g){
+        Builder builder = new Builder(g.getVertexCount());
+        int[] pair = new int[2];
+        for(int v = 0; v < g.getVertexCount(); v++){
+            if(g.getVertexWeight(v) != 1){
+                builder.setVertexWeight(v, g.getVertexWeight(v));
+            }
+            for(int i = 0; i < g.getDegree(v); i++){
+                int u = g.getNeighbor(v, i);
+                if(u > v){
+                    pair[0] = v;
+                    pair[1] = u;
+                    builder.addNet(pair, g.getNeighborWeight(v, i));
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    public int getVertexCount(){
+        return vertexOffsets.length - 1;
+    }
+
+    public int getNetCount(){
+        return netOffsets.length - 1;
+    }
+
+    /**
+     *
+     * @return int The total number of pins of all nets
+     */
+    public int getPinCount(){
+        return pins.length;
+    }
+
+    public int getNetSize(int n){
+        return netOffsets[n + 1] - netOffsets[n];
+    }
+
+    public int getPin(int n, int index){
+        return pins[netOffsets[n] + index];
+    }
+
+    public int getNetWeight(int n){
+        return (netWeights != null) ? netWeights[n] : 1;
+    }
+
+    /**
+     *
+     * @return int The number of nets vertex v is a pin of
+     */
+    public int getDegree(int v){
+        return vertexOffsets[v + 1] - vertexOffsets[v];
+    }
+
+    public int getNet(int v, int index){
+        return nets[vertexOffsets[v] + index];
+    }
+
+    public int getVertexWeight(int v){
+        return (vertexWeights != null) ? vertexWeights[v] : 1;
+    }
+
+    public String getLabel(int v){
+        return (labels != null && labels[v] != null) ? labels[v] : String.valueOf(v);
+    }
+
+    /**
+     *
+     * @return this hypergraph represent as a string
+     */
+    public String toString(){
+        return "Hypergraph(" + getVertexCount() + " vertices, " + getNetCount() + " nets, " + getPinCount() + " pins)";
+    }
+
+    /**
+     * Collects nets in insertion order and turns them into a Hypergraph.
+     * A vertex listed twice in one net is a single pin of it.
+     */
+    public static class Builder {
+
+        private int vertexCount;
+        private String[] labels;
+        private int[] vertexWeights;
+        private int netCount;
+        private int[] netOffsets = new int[16];
+        private int[] netWeights = new int[16];
+        private boolean weighted;
+        private int[] pins = new int[16];
+
+        public Builder(){
+            this(0);
+        }
+
+        /**
+         * @param vertexCount Number of vertices known up front
+         */
+        public Builder(int vertexCount){
+            this.vertexCount = vertexCount;
+        }
+
+        /**
+         * Adds a vertex with the given label
+         * @return int The id of the new vertex
+         */
+        public int addVertex(String label){
+            int id = vertexCount++;
+            setLabel(id, label);
+            return id;
+        }
+
+        /**
+         * Labels vertex v, growing the vertex count if needed
+         */
+        public void setLabel(int v, String label){
+            ensureVertex(v);
+            if(labels == null){
+                labels = new String[Math.max(16, vertexCount)];
+            } else if(labels.length <= v){
+                labels = Arrays.copyOf(labels, Math.max(v + 1, labels.length * 2));
+            }
+            labels[v] = label;
+        }
+
+        /**
+         * Sets the weight of vertex v, growing the vertex count if needed
+         */
+        public void setVertexWeight(int v, int weight){
+            ensureVertex(v);
+            if(weight < 0){
+                throw new IllegalArgumentException("Vertex weight must not be negative");
+            }
+            if(vertexWeights == null){
+                vertexWeights = new int[Math.max(16, vertexCount)];
+                Arrays.fill(vertexWeights, 1);
+            } else if(vertexWeights.length <= v){
+                int length = vertexWeights.length;
+                vertexWeights = Arrays.copyOf(vertexWeights, Math.max(v + 1, length * 2));
+                Arrays.fill(vertexWeights, length, vertexWeights.length, 1);
+            }
+            vertexWeights[v] = weight;
+        }
+
+        /**
+         * Makes sure vertex v exists
+         */
+        public void ensureVertex(int v){
+            if(v < 0){
+                throw new IllegalArgumentException("Negative vertex id " + v);
+            }
+            if(v >= vertexCount){
+                vertexCount = v + 1;
+            }
+        }
+
+        /**
+         * Add net with weight = 1
+         */
+        public int addNet(int... pins){
+            return addNet(pins, 1);
+        }
+
+        /**
+         * Add net joining the given vertices with given weight
+         * @return int The id of the new net
+         */
+        public int addNet(int[] netPins, int weight){
+            if(weight < 0){
+                throw new IllegalArgumentException("Net weight must not be negative");
+            }
+            int[] sorted = netPins.clone();
+            Arrays.sort(sorted);
+            if(netCount + 1 == netOffsets.length){
+                netOffsets = Arrays.copyOf(netOffsets, 2 * netOffsets.length);
+                netWeights = Arrays.copyOf(netWeights, 2 * netWeights.length);
+            }
+            int size = netOffsets[netCount];
+            if(size + sorted.length > pins.length){
+                pins = Arrays.copyOf(pins, Math.max(size + sorted.length, 2 * pins.length));
+            }
+            for(int i = 0; i < sorted.length; i++){
+                if(i > 0 && sorted[i] == sorted[i - 1]){
+                    continue;
+                }
+                ensureVertex(sorted[i]);
+                pins[size++] = sorted[i];
+            }
+            netWeights[netCount] = weight;
+            weighted |= weight != 1;
+            netOffsets[++netCount] = size;
+            return netCount - 1;
+        }
+
+        /**
+         *
+         * @return Hypergraph holding every net added so far
+         */
+        public Hypergraph build(){
+            int n = vertexCount;
+            int pinCount = netOffsets[netCount];
+            // the nets of every vertex by a counting sort of the pins, in net order
+            int[] vertexOffsets = new int[n + 1];
+            for(int i = 0; i < pinCount; i++){
+                vertexOffsets[pins[i] + 1]++;
+            }
+            for(int v = 0; v < n; v++){
+                vertexOffsets[v + 1] += vertexOffsets[v];
+            }
+            int[] nets = new int[pinCount];
+            int[] next = Arrays.copyOf(vertexOffsets, n);
+            for(int net = 0; net < netCount; net++){
+                for(int i = netOffsets[net]; i < netOffsets[net + 1]; i++){
+                    nets[next[pins[i]]++] = net;
+                }
+            }
+            String[] l = (labels == null) ? null : Arrays.copyOf(labels, n);
+            int[] vw = null;
+            if(vertexWeights != null){
+                vw = Arrays.copyOf(vertexWeights, n);
+                for(int v = Math.min(n, vertexWeights.length); v < n; v++){
+                    vw[v] = 1;
+                }
+            }
+            return new Hypergraph(Arrays.copyOf(netOffsets, netCount + 1), Arrays.copyOf(pins, pinCount),
+                    weighted ? Arrays.copyOf(netWeights, netCount) : null, vertexOffsets, nets, vw, l);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package graph;
+
+/**
+ * Read-only view of an undirected graph whose vertices are numbered
+ * 0 .. getVertexCount()-1. Every edge {u, v} is visible from both ends.
+ */
+public interface IntGraph {
+
+    /**
+     *
+     * @return int The number of vertices in this graph
+     */
+    int getVertexCount();
+
+    /**
+     *
+     * @return int The number of undirected edges in this graph
+     */
+    int getEdgeCount();
+
+    /**
+     *
+     * @param v The vertex id
+     * @return int The number of neighbors of v
+     */
+    int getDegree(int v);
+
+    /**
+     *
+     * @param v The vertex id
+     * @param index The index of the neighbor, 0 <= index < getDegree(v)
+     * @return int The id of the neighbor
+     */
+    int getNeighbor(int v, int index);
+
+    /**
+     *
+     * @param v The vertex id
+     * @param index The index of the neighbor, 0 <= index < getDegree(v)
+     * @return int The weight of the edge between v and that neighbor
+     */
+    int getNeighborWeight(int v, int index);
+
+    /**
+     *
+     * @param v The vertex id
+     * @return int The weight of the vertex, 1 unless the graph says otherwise
+     */
+    default int getVertexWeight(int v){
+        return 1;
+    }
+
+    /**
+     *
+     * @param v The vertex id
+     * @return String The label of the vertex
+     */
+    String getLabel(int v);
+}
@@ -0,0 +1,173 @@
+package graph;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Graph read straight from a memory mapped binary file, so loading costs no
+ * parsing and the adjacency lives in the page cache instead of the heap.
+ *
+ * The file holds big endian ints: a header of MAGIC, VERSION, the vertex
+ * count n, the arc count (twice the edge count) and flags, followed by the
+ * n + 1 offsets, the targets and the edge weights in compressed sparse row
+ * order, and the n vertex weights when flag VERTEX_WEIGHTS is set.
+ * Every section is mapped on its own and must stay below 2 GB.
+ */
+public class MappedGraph implements IntGraph {
+
+    public static final int MAGIC = 0x47524150;
+    public static final int VERSION = 1;
+    public static final int VERTEX_WEIGHTS = 1;
+    private static final int HEADER_INTS = 5;
+
+    private final int vertexCount;
+    private final int arcCount;
+    private final IntBuffer offsets;
+    private final IntBuffer targets;
+    private final IntBuffer weights;
+    private final IntBuffer vertexWeights;
+
+    private MappedGraph(int vertexCount, int arcCount, IntBuffer offsets, IntBuffer targets,
+            IntBuffer weights, IntBuffer vertexWeights){
+        this.vertexCount = vertexCount;
+        this.arcCount = arcCount;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.vertexWeights = vertexWeights;
+    }
+
+    /**
+     * Writes g to path in the binary format
+     */
+    public static void write(IntGraph g, String path) throws IOException{
+        int n = g.getVertexCount();
+        boolean weighted = false;
+        for(int v = 0; v < n && !weighted; v++){
+            weighted = g.getVertexWeight(v) != 1;
+        }
+        long arcs = 0;
+        for(int v = 0; v < n; v++){
+            arcs += g.getDegree(v);
+        }
+        if(arcs > Integer.MAX_VALUE / 4 || n >= Integer.MAX_VALUE / 4){
+            throw new IOException("Graph too large for the binary format: " + arcs + " arcs");
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16));
+        try{
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(n);
+            out.writeInt((int) arcs);
+            out.writeInt(weighted ? VERTEX_WEIGHTS : 0);
+            int offset = 0;
+            out.writeInt(offset);
+            for(int v = 0; v < n; v++){
+                offset += g.getDegree(v);
+                out.writeInt(offset);
+            }
+            for(int v = 0; v < n; v++){
+                for(int i = 0; i < g.getDegree(v); i++){
+                    out.writeInt(g.getNeighbor(v, i));
+                }
+            }
+            for(int v = 0; v < n; v++){
+                for(int i = 0; i < g.getDegree(v); i++){
+                    out.writeInt(g.getNeighborWeight(v, i));
+                }
+            }
+            if(weighted){
+                for(int v = 0; v < n; v++){
+                    out.writeInt(g.getVertexWeight(v));
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Maps the binary graph at path. Vertex labels are not stored, so vertices
+     * are labelled by their ids.
+     */
+    public static MappedGraph open(String path) throws IOException{
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try{
+            FileChannel channel = file.getChannel();
+            if(channel.size() < HEADER_INTS * 4){
+                throw new IOException(path + " is not a binary graph file");
+            }
+            IntBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_INTS * 4).asIntBuffer();
+            if(header.get(0) != MAGIC){
+                throw new IOException(path + " is not a binary graph file");
+            }
+            if(header.get(1) != VERSION){
+                throw new IOException("Unsupported binary graph version " + header.get(1));
+            }
+            int n = header.get(2);
+            int arcs = header.get(3);
+            boolean weighted = (header.get(4) & VERTEX_WEIGHTS) != 0;
+            long position = HEADER_INTS * 4;
+            long expected = position + 4L * (n + 1) + 8L * arcs + (weighted ? 4L * n : 0);
+            if(channel.size() < expected){
+                throw new IOException(path + " is truncated");
+            }
+            IntBuffer offsets = map(channel, position, n + 1);
+            position += 4L * (n + 1);
+            IntBuffer targets = map(channel, position, arcs);
+            position += 4L * arcs;
+            IntBuffer weights = map(channel, position, arcs);
+            position += 4L * arcs;
+            IntBuffer vertexWeights = weighted ? map(channel, position, n) : null;
+            // the mappings stay valid after the channel is closed
+            return new MappedGraph(n, arcs, offsets, targets, weights, vertexWeights);
+        } finally {
+            file.close();
+        }
+    }
+
+    private static IntBuffer map(FileChannel channel, long position, int ints) throws IOException{
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * ints).asIntBuffer();
+    }
+
+    public int getVertexCount(){
+        return vertexCount;
+    }
+
+    public int getEdgeCount(){
+        return arcCount / 2;
+    }
+
+    public int getDegree(int v){
+        return offsets.get(v + 1) - offsets.get(v);
+    }
+
+    public int getNeighbor(int v, int index){
+        return targets.get(offsets.get(v) + index);
+    }
+
+    public int getNeighborWeight(int v, int index){
+        return weights.get(offsets.get(v) + index);
+    }
+
+    public int getVertexWeight(int v){
+        return (vertexWeights != null) ? vertexWeights.get(v) : 1;
+    }
+
+    public String getLabel(int v){
+        return String.valueOf(v);
+    }
+
+    /**
+     *
+     * @return this graph represent as a string
+     */
+    public String toString(){
+        return "MappedGraph(" + getVertexCount() + " vertices, " + getEdgeCount() + " edges)";
+    }
+}
@@ -0,0 +1,134 @@
+package graph;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Reads a METIS graph one vertex at a time, so a graph may be processed
+ * without ever holding all of it in memory. Only the adjacency of the
+ * current vertex is kept, with neighbors as 0-based ids.
+ *
+ * See GraphReader.readMetis for the format.
+ */
+public class MetisStream implements Closeable {
+
+    private final InputStream in;
+    private final GraphReader.Tokens tokens;
+    private final int vertexCount;
+    private final long edgeCount;
+    private final int constraints;
+    private final boolean vertexWeights;
+    private final boolean edgeWeights;
+    // the current vertex, -1 before the first call to next()
+    private int vertex = -1;
+    private int vertexWeight;
+    private int degree;
+    private int[] neighbors = new int[16];
+    private int[] weights = new int[16];
+
+    public MetisStream(String path) throws IOException{
+        this(new FileInputStream(path));
+    }
+
+    /**
+     * Reads the header from in, which is closed by close()
+     */
+    public MetisStream(InputStream in) throws IOException{
+        this.in = in;
+        this.tokens = new GraphReader.Tokens(in);
+        tokens.skipComments();
+        vertexCount = tokens.readInt();
+        edgeCount = tokens.readInt();
+        int format = tokens.hasNextOnLine() ? tokens.readInt() : 0;
+        constraints = tokens.hasNextOnLine() ? tokens.readInt() : 1;
+        vertexWeights = (format / 10) % 10 == 1;
+        edgeWeights = format % 10 == 1;
+        tokens.skipLine();
+    }
+
+    public int getVertexCount(){
+        return vertexCount;
+    }
+
+    /**
+     *
+     * @return the number of edges given in the header
+     */
+    public long getEdgeCount(){
+        return edgeCount;
+    }
+
+    /**
+     * Reads the line of the next vertex
+     * @return false once all vertices have been read
+     */
+    public boolean next() throws IOException{
+        if(vertex + 1 >= vertexCount){
+            return false;
+        }
+        vertex++;
+        tokens.skipComments();
+        if(tokens.isEnd()){
+            throw new IOException("Expected " + vertexCount + " vertex lines but found " + vertex);
+        }
+        vertexWeight = 1;
+        if(vertexWeights){
+            vertexWeight = tokens.readInt();
+            for(int c = 1; c < constraints; c++){
+                tokens.readInt();
+            }
+        }
+        degree = 0;
+        while(tokens.hasNextOnLine()){
+            int u = tokens.readInt() - 1;
+            int weight = edgeWeights ? tokens.readInt() : 1;
+            if(u < 0 || u >= vertexCount){
+                throw new IOException("Vertex " + (vertex + 1) + " has neighbor " + (u + 1) + " out of range");
+            }
+            if(degree == neighbors.length){
+                neighbors = Arrays.copyOf(neighbors, 2 * degree);
+                weights = Arrays.copyOf(weights, 2 * degree);
+            }
+            neighbors[degree] = u;
+            weights[degree] = weight;
+            degree++;
+        }
+        tokens.skipLine();
+        return true;
+    }
+
+    /**
+     *
+     * @return 0-based id of the current vertex
+     */
+    public int getVertex(){
+        return vertex;
+    }
+
+    /**
+     *
+     * @return the first weight of the current vertex, 1 when the file has none
+     */
+    public int getVertexWeight(){
+        return vertexWeight;
+    }
+
+    public int getDegree(){
+        return degree;
+    }
+
+    public int getNeighbor(int index){
+        return neighbors[index];
+    }
+
+    public int getNeighborWeight(int index){
+        return weights[index];
+    }
+
+    public void close() throws IOException{
+        in.close();
+    }
+}
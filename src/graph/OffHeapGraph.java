@@ -0,0 +1,206 @@
+package graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Graph in compressed sparse row form kept in direct buffers outside the
+ * Java heap, together with a part for every vertex. However large the graph,
+ * the heap only holds a few buffer objects, so the garbage collector never
+ * scans or copies the adjacency. The memory is given back when the graph
+ * becomes unreachable.
+ *
+ * Only the graph itself is off heap. The parts buffer stores an assignment
+ * between runs, copied in by setPartition and out by getPartition; the
+ * partitioners do not work on it. Fiduccia Mattheyses, Kernighan Lin and
+ * PartitionState keep their sides, locks and gain buckets in heap arrays of
+ * a few ints per vertex, so a run still needs heap in proportion to the
+ * vertex count, though no longer to the edge count.
+ *
+ * Layout is the one of CompactGraph: the neighbors of vertex v are
+ * targets[offsets[v]] .. targets[offsets[v + 1] - 1] with the matching edge
+ * weights in weights[]. Every buffer must stay below 2 GB, as with MappedGraph,
+ * which keeps the same layout in a file for graphs larger than memory.
+ */
+public class OffHeapGraph implements IntGraph {
+
+    private final int vertexCount;
+    private final int arcCount;
+    private final IntBuffer offsets;
+    private final IntBuffer targets;
+    private final IntBuffer weights;
+    private final IntBuffer vertexWeights;
+    private final IntBuffer parts;
+
+    private OffHeapGraph(int vertexCount, int arcCount, IntBuffer offsets, IntBuffer targets,
+            IntBuffer weights, IntBuffer vertexWeights){
+        this.vertexCount = vertexCount;
+        this.arcCount = arcCount;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.vertexWeights = vertexWeights;
+        this.parts = allocate(vertexCount);
+    }
+
+    /**
+     *
+     * @param g The graph to copy, vertex v of g becoming vertex v of this graph
+     * @return OffHeapGraph with the edges and vertex weights of g, every vertex in part 0
+     */
+    public static OffHeapGraph copyOf(IntGraph g){
+        int n = g.getVertexCount();
+        boolean weighted = false;
+        long arcs = 0;
+        for(int v = 0; v < n; v++){
+            arcs += g.getDegree(v);
+            weighted |= g.getVertexWeight(v) != 1;
+        }
+        checkSize(n, arcs);
+        IntBuffer offsets = allocate(n + 1);
+        IntBuffer targets = allocate((int) arcs);
+        IntBuffer weights = allocate((int) arcs);
+        IntBuffer vertexWeights = weighted ? allocate(n) : null;
+        int offset = 0;
+        for(int v = 0; v < n; v++){
+            offsets.put(v, offset);
+            for(int i = 0; i < g.getDegree(v); i++){
+                targets.put(offset, g.getNeighbor(v, i));
+                weights.put(offset, g.getNeighborWeight(v, i));
+                offset++;
+            }
+            if(weighted){
+                vertexWeights.put(v, g.getVertexWeight(v));
+            }
+        }
+        offsets.put(n, offset);
+        return new OffHeapGraph(n, (int) arcs, offsets, targets, weights, vertexWeights);
+    }
+
+    /**
+     * Reads the rest of a METIS stream straight into off heap buffers sized by
+     * its header, so the graph is never held on the heap
+     * @return OffHeapGraph with vertex labels being ids, every vertex in part 0
+     */
+    public static OffHeapGraph read(MetisStream stream) throws IOException{
+        int n = stream.getVertexCount();
+        long arcs = 2 * stream.getEdgeCount();
+        checkSize(n, arcs);
+        IntBuffer offsets = allocate(n + 1);
+        IntBuffer targets = allocate((int) arcs);
+        IntBuffer weights = allocate((int) arcs);
+        IntBuffer vertexWeights = null;
+        int offset = 0;
+        while(stream.next()){
+            int v = stream.getVertex();
+            offsets.put(v, offset);
+            if(offset + stream.getDegree() > arcs){
+                throw new IOException("Vertex " + (v + 1) + " has more edges than the header gives");
+            }
+            for(int i = 0; i < stream.getDegree(); i++){
+                targets.put(offset, stream.getNeighbor(i));
+                weights.put(offset, stream.getNeighborWeight(i));
+                offset++;
+            }
+            if(stream.getVertexWeight() != 1 && vertexWeights == null){
+                vertexWeights = allocate(n);
+                for(int u = 0; u < v; u++){
+                    vertexWeights.put(u, 1);
+                }
+            }
+            if(vertexWeights != null){
+                vertexWeights.put(v, stream.getVertexWeight());
+            }
+        }
+        if(offset != arcs){
+            throw new IOException("Expected " + arcs + " neighbor entries but found " + offset);
+        }
+        offsets.put(n, offset);
+        return new OffHeapGraph(n, offset, offsets, targets, weights, vertexWeights);
+    }
+
+    private static void checkSize(int n, long arcs){
+        if(arcs > Integer.MAX_VALUE / 4 || n >= Integer.MAX_VALUE / 4){
+            throw new IllegalArgumentException("Graph too large for off heap buffers: " + arcs + " arcs");
+        }
+    }
+
+    private static IntBuffer allocate(int ints){
+        return ByteBuffer.allocateDirect(4 * ints).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    public int getVertexCount(){
+        return vertexCount;
+    }
+
+    public int getEdgeCount(){
+        return arcCount / 2;
+    }
+
+    public int getDegree(int v){
+        return offsets.get(v + 1) - offsets.get(v);
+    }
+
+    public int getNeighbor(int v, int index){
+        return targets.get(offsets.get(v) + index);
+    }
+
+    public int getNeighborWeight(int v, int index){
+        return weights.get(offsets.get(v) + index);
+    }
+
+    public int getVertexWeight(int v){
+        return (vertexWeights != null) ? vertexWeights.get(v) : 1;
+    }
+
+    public String getLabel(int v){
+        return String.valueOf(v);
+    }
+
+    /**
+     *
+     * @return int The part vertex v is assigned to
+     */
+    public int getPart(int v){
+        return parts.get(v);
+    }
+
+    public void setPart(int v, int part){
+        parts.put(v, part);
+    }
+
+    /**
+     *
+     * @param partition The part of every vertex, as the partitioners return it, copied off the heap
+     */
+    public void setPartition(int[] partition){
+        if(partition.length != vertexCount){
+            throw new IllegalArgumentException("Partition size must match the number of vertices");
+        }
+        for(int v = 0; v < vertexCount; v++){
+            parts.put(v, partition[v]);
+        }
+    }
+
+    /**
+     *
+     * @return int[] The part of every vertex, copied onto the heap
+     */
+    public int[] getPartition(){
+        int[] partition = new int[vertexCount];
+        for(int v = 0; v < vertexCount; v++){
+            partition[v] = parts.get(v);
+        }
+        return partition;
+    }
+
+    /**
+     *
+     * @return this graph represent as a string
+     */
+    public String toString(){
+        return "OffHeapGraph(" + getVertexCount() + " vertices, " + getEdgeCount() + " edges)";
+    }
+}
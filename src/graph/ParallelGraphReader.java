@@ -0,0 +1,467 @@
+package graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Reads large edge lists and adjacency matrices on several cores. The file
+ * is memory mapped and cut into byte ranges that end at line ends, every
+ * range is parsed on its own thread into edge buffers of its own, and the
+ * buffers are merged into a CompactGraph by a counting sort that runs in
+ * parallel too: every range counts its edges per block of vertices, the
+ * counts give every range a disjoint slot per block, the ranges fill their
+ * slots at once, and the blocks are then sorted by vertex one per thread.
+ * Besides the graph this takes three ints per arc and scratch space per
+ * block, whatever the number of ranges.
+ *
+ * The result is the graph GraphReader builds from the same file, including
+ * which weight a repeated edge keeps. Files below PARALLEL_THRESHOLD bytes
+ * are simply read by GraphReader.
+ */
+public class ParallelGraphReader {
+
+    // smaller files are read on one thread
+    static final long PARALLEL_THRESHOLD = 1 << 22;
+    // a range is mapped at once, which must stay below 2 GB
+    static final long MAX_RANGE = 1 << 30;
+
+    private ParallelGraphReader(){
+    }
+
+    public static CompactGraph readEdgeList(String path) throws IOException{
+        return readEdgeList(path, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Reads the edge list at path, see GraphReader.readEdgeList for the format
+     * @param pool The threads to parse and merge on
+     */
+    public static CompactGraph readEdgeList(String path, ForkJoinPool pool) throws IOException{
+        if(new File(path).length() < PARALLEL_THRESHOLD || pool.getParallelism() == 1){
+            return GraphReader.readEdgeList(path);
+        }
+        return read(path, pool, false);
+    }
+
+    public static CompactGraph readAdjacencyMatrix(String path) throws IOException{
+        return readAdjacencyMatrix(path, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Reads the adjacency matrix at path, see GraphReader.readAdjacencyMatrix for the format
+     * @param pool The threads to parse and merge on
+     */
+    public static CompactGraph readAdjacencyMatrix(String path, ForkJoinPool pool) throws IOException{
+        if(new File(path).length() < PARALLEL_THRESHOLD || pool.getParallelism() == 1){
+            return GraphReader.readAdjacencyMatrix(path);
+        }
+        return read(path, pool, true);
+    }
+
+    /**
+     * Edges parsed from one byte range, in the order of the file. For a matrix
+     * the rows are numbered within the range until shiftRows is called.
+     */
+    private static class Chunk {
+        final boolean matrix;
+        int[] from = new int[1024];
+        int[] to = new int[1024];
+        int[] weight = new int[1024];
+        int size;
+        int maxFrom = -1, maxTo = -1;
+        int rows;
+
+        Chunk(boolean matrix){
+            this.matrix = matrix;
+        }
+
+        void add(int one, int two, int w){
+            if(one < 0 || two < 0){
+                throw new IllegalArgumentException("Negative vertex id " + Math.min(one, two));
+            }
+            maxFrom = Math.max(maxFrom, one);
+            maxTo = Math.max(maxTo, two);
+            // a local row may equal its column by chance, so matrix self loops go later
+            if(one == two && !matrix){
+                return;
+            }
+            if(size == from.length){
+                int capacity = 2 * size;
+                from = Arrays.copyOf(from, capacity);
+                to = Arrays.copyOf(to, capacity);
+                weight = Arrays.copyOf(weight, capacity);
+            }
+            from[size] = one;
+            to[size] = two;
+            weight[size] = w;
+            size++;
+        }
+
+        /**
+         * Numbers the rows after those of the ranges before, dropping the diagonal
+         */
+        void shiftRows(int offset){
+            int k = 0;
+            for(int i = 0; i < size; i++){
+                int row = from[i] + offset;
+                if(row == to[i]){
+                    continue;
+                }
+                from[k] = row;
+                to[k] = to[i];
+                weight[k] = weight[i];
+                k++;
+            }
+            size = k;
+        }
+    }
+
+    private static CompactGraph read(String path, ForkJoinPool pool, final boolean matrix) throws IOException{
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try{
+            final FileChannel channel = file.getChannel();
+            long size = channel.size();
+            int ranges = (int) Math.max(pool.getParallelism(), (size + MAX_RANGE - 1) / MAX_RANGE);
+            final long[] bounds = split(channel, size, ranges);
+            final Chunk[] chunks = new Chunk[ranges];
+            forEach(pool, ranges, new Task() {
+                public void run(int r) throws IOException{
+                    chunks[r] = parse(channel, bounds[r], bounds[r + 1], matrix);
+                }
+            });
+            int n = 0;
+            final int[] rowOffsets = new int[ranges];
+            int rows = 0;
+            for(int r = 0; r < ranges; r++){
+                rowOffsets[r] = rows;
+                rows += chunks[r].rows;
+                n = Math.max(n, chunks[r].maxTo + 1);
+                if(!matrix){
+                    n = Math.max(n, chunks[r].maxFrom + 1);
+                }
+            }
+            if(matrix){
+                // every row is a vertex, even one without edges
+                n = Math.max(n, rows);
+                forEach(pool, ranges, new Task() {
+                    public void run(int r){
+                        chunks[r].shiftRows(rowOffsets[r]);
+                    }
+                });
+            }
+            return merge(pool, chunks, n);
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Cuts the file into ranges that each start at the beginning of a line
+     * @return ranges + 1 bounds, range r being bounds[r] .. bounds[r + 1] - 1
+     */
+    private static long[] split(FileChannel channel, long size, int ranges) throws IOException{
+        long[] bounds = new long[ranges + 1];
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+        for(int r = 1; r < ranges; r++){
+            long p = Math.max(bounds[r - 1], size / ranges * r);
+            // move past the end of the line the cut falls into, unless it starts one
+            if(p > 0){
+                p--;
+                boolean found = false;
+                while(!found && p < size){
+                    buffer.clear();
+                    int read = channel.read(buffer, p);
+                    if(read <= 0){
+                        p = size;
+                        break;
+                    }
+                    for(int i = 0; i < read; i++){
+                        if(buffer.get(i) == '\n'){
+                            p += i + 1;
+                            found = true;
+                            break;
+                        }
+                    }
+                    if(!found){
+                        p += read;
+                    }
+                }
+            }
+            bounds[r] = Math.min(p, size);
+        }
+        bounds[ranges] = size;
+        return bounds;
+    }
+
+    /**
+     * Parses bytes start .. end - 1 with the digit parser of GraphReader
+     */
+    private static Chunk parse(FileChannel channel, long start, long end, boolean matrix) throws IOException{
+        Chunk chunk = new Chunk(matrix);
+        if(end <= start){
+            return chunk;
+        }
+        GraphReader.Tokens tokens = new GraphReader.Tokens(
+                new BufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start)));
+        try{
+            while(!tokens.isEnd()){
+                if(tokens.isCommentOrBlankLine()){
+                    tokens.skipLine();
+                    continue;
+                }
+                if(matrix){
+                    for(int column = 0; tokens.hasNextOnLine(); column++){
+                        int weight = tokens.readInt();
+                        if(weight != 0){
+                            chunk.add(chunk.rows, column, weight);
+                        }
+                    }
+                    chunk.rows++;
+                } else {
+                    int one = tokens.readInt();
+                    int two = tokens.readInt();
+                    int weight = tokens.hasNextOnLine() ? tokens.readInt() : 1;
+                    chunk.add(one, two, weight);
+                }
+                tokens.skipLine();
+            }
+        } catch (IOException ex) {
+            // line numbers count from the start of the range
+            throw new IOException("In bytes " + start + " to " + end + ": " + ex.getMessage());
+        }
+        return chunk;
+    }
+
+    /**
+     * Builds the compressed sparse row arrays from the edges of all chunks, with
+     * the neighbors of every vertex sorted and repeated edges merged as
+     * CompactGraph.Builder does, the first edge in file order winning.
+     *
+     * The vertices are cut into blocks of 2^shift consecutive ids. Every chunk
+     * counts its arcs per block, which gives every chunk a disjoint slot in every
+     * block, in chunk order, and the chunks fill their slots at once. A block
+     * then holds its arcs in file order, and is sorted by source vertex and
+     * target on its own, in scratch arrays of the size of the block.
+     */
+    private static CompactGraph merge(ForkJoinPool pool, final Chunk[] chunks, final int n) throws IOException{
+        final int ranges = chunks.length;
+        final int shift = blockShift(n, pool.getParallelism());
+        final int blocks = (n == 0) ? 0 : ((n - 1) >>> shift) + 1;
+        // next[r][b] is the number of arcs of chunk r in block b, later the next slot for them
+        final int[][] next = new int[ranges][];
+        forEach(pool, ranges, new Task() {
+            public void run(int r){
+                Chunk c = chunks[r];
+                int[] count = new int[blocks];
+                for(int i = 0; i < c.size; i++){
+                    count[c.from[i] >>> shift]++;
+                    count[c.to[i] >>> shift]++;
+                }
+                next[r] = count;
+            }
+        });
+        // blockOffsets[b] is the first arc of block b
+        final int[] blockOffsets = new int[blocks + 1];
+        long arcs = 0;
+        for(int b = 0; b < blocks; b++){
+            blockOffsets[b] = (int) arcs;
+            for(int r = 0; r < ranges; r++){
+                int count = next[r][b];
+                next[r][b] = (int) arcs;
+                arcs += count;
+            }
+            if(arcs > Integer.MAX_VALUE - 8){
+                throw new IOException("Graph too large: more than " + Integer.MAX_VALUE + " arcs");
+            }
+        }
+        blockOffsets[blocks] = (int) arcs;
+        final int[] sources = new int[(int) arcs];
+        final int[] targets = new int[(int) arcs];
+        final int[] weights = new int[(int) arcs];
+        forEach(pool, ranges, new Task() {
+            public void run(int r){
+                Chunk c = chunks[r];
+                int[] slot = next[r];
+                for(int i = 0; i < c.size; i++){
+                    int k = slot[c.from[i] >>> shift]++;
+                    sources[k] = c.from[i];
+                    targets[k] = c.to[i];
+                    weights[k] = c.weight[i];
+                    k = slot[c.to[i] >>> shift]++;
+                    sources[k] = c.to[i];
+                    targets[k] = c.from[i];
+                    weights[k] = c.weight[i];
+                }
+                chunks[r] = null;
+                next[r] = null;
+            }
+        });
+        // offsets[v] is the first arc of v, degrees[v + 1] the number kept after merging repeats
+        final int[] offsets = new int[n + 1];
+        final int[] degrees = new int[n + 1];
+        forEach(pool, blocks, new Task() {
+            public void run(int b){
+                sortBlock(b << shift, Math.min(n, (b + 1) << shift), blockOffsets[b], blockOffsets[b + 1],
+                        sources, targets, weights, offsets, degrees);
+            }
+        });
+        offsets[n] = (int) arcs;
+        for(int v = 0; v < n; v++){
+            degrees[v + 1] += degrees[v];
+        }
+        if(degrees[n] == arcs){
+            // no repeated edges, the arcs are already packed
+            return new CompactGraph(degrees, targets, weights, null, null);
+        }
+        final int[] packedTargets = new int[degrees[n]];
+        final int[] packedWeights = new int[degrees[n]];
+        forEach(pool, blocks, new Task() {
+            public void run(int b){
+                for(int v = b << shift; v < Math.min(n, (b + 1) << shift); v++){
+                    int degree = degrees[v + 1] - degrees[v];
+                    System.arraycopy(targets, offsets[v], packedTargets, degrees[v], degree);
+                    System.arraycopy(weights, offsets[v], packedWeights, degrees[v], degree);
+                }
+            }
+        });
+        return new CompactGraph(degrees, packedTargets, packedWeights, null, null);
+    }
+
+    /**
+     *
+     * @return shift giving blocks of at most 2^16 vertices and at least 4 blocks per thread
+     */
+    private static int blockShift(int n, int parallelism){
+        int shift = 16;
+        while(shift > 0 && ((long) n >>> shift) < 4L * parallelism){
+            shift--;
+        }
+        return shift;
+    }
+
+    /**
+     * Sorts arcs first .. end - 1, those of vertices from .. to - 1 in file order, by
+     * source with a stable counting sort and then every vertex's arcs by target,
+     * keeping the first of repeated targets at the front of the vertex's slot
+     */
+    private static void sortBlock(int from, int to, int first, int end, int[] sources, int[] targets,
+            int[] weights, int[] offsets, int[] degrees){
+        int length = end - first;
+        int[] start = new int[to - from + 1];
+        for(int k = first; k < end; k++){
+            start[sources[k] - from + 1]++;
+        }
+        for(int v = 0; v < to - from; v++){
+            start[v + 1] += start[v];
+        }
+        int[] sortedTargets = new int[length];
+        int[] sortedWeights = new int[length];
+        for(int v = from; v < to; v++){
+            offsets[v] = first + start[v - from];
+        }
+        for(int k = first; k < end; k++){
+            int i = start[sources[k] - from]++;
+            sortedTargets[i] = targets[k];
+            sortedWeights[i] = weights[k];
+        }
+        long[] keys = new long[16];
+        for(int v = from; v < to; v++){
+            int offset = offsets[v];
+            int local = offset - first;
+            int degree = ((v + 1 < to) ? offsets[v + 1] : end) - offset;
+            if(keys.length < degree){
+                keys = new long[Math.max(degree, 2 * keys.length)];
+            }
+            // by target, then by position, which keeps file order among repeats
+            for(int i = 0; i < degree; i++){
+                keys[i] = (long) sortedTargets[local + i] << 32 | i;
+            }
+            Arrays.sort(keys, 0, degree);
+            int k = 0;
+            for(int i = 0; i < degree; i++){
+                int target = (int) (keys[i] >>> 32);
+                if(k > 0 && targets[offset + k - 1] == target){
+                    continue;
+                }
+                targets[offset + k] = target;
+                weights[offset + k] = sortedWeights[local + (int) keys[i]];
+                k++;
+            }
+            degrees[v + 1] = k;
+        }
+    }
+
+    private interface Task {
+        void run(int i) throws IOException;
+    }
+
+    /**
+     * Runs task for 0 .. count - 1 on the pool and waits for all of them,
+     * passing on the first failure
+     */
+    private static void forEach(ForkJoinPool pool, int count, final Task task) throws IOException{
+        List<Callable<Void>> calls = new ArrayList<Callable<Void>>();
+        for(int i = 0; i < count; i++){
+            final int index = i;
+            calls.add(new Callable<Void>() {
+                public Void call() throws IOException{
+                    task.run(index);
+                    return null;
+                }
+            });
+        }
+        for(Future<Void> f : pool.invokeAll(calls)){
+            try{
+                f.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading");
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if(cause instanceof IOException){
+                    throw (IOException) cause;
+                }
+                if(cause instanceof RuntimeException){
+                    throw (RuntimeException) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    /**
+     * Reads a mapped byte range as a stream
+     */
+    private static class BufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer){
+            this.buffer = buffer;
+        }
+
+        public int read(){
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        public int read(byte[] b, int off, int len){
+            if(!buffer.hasRemaining()){
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+    }
+}
@@ -6,6 +6,7 @@ public class Vertex {
 
     public ArrayList<Edge> neighborhood;
     public String label;
+    public int weight;
   
    /**
      *
@@ -13,7 +14,21 @@ public class Vertex {
      */
 
     public Vertex(String label){
+       this(label, 1);
+    }
+
+   /**
+     *
+     * @param label The unique label associated with this Vertex
+     * @param weight The load of this Vertex, which partitions balance
+     */
+
+    public Vertex(String label, int weight){
+       if(weight < 0){
+           throw new IllegalArgumentException("Vertex weight must not be negative");
+       }
        this.label = label;
+       this.weight = weight;
        this.neighborhood = new ArrayList<Edge>();
     }
    
@@ -77,6 +92,27 @@ public class Vertex {
         return this.neighborhood.size();
     }
   
+  /**
+    *
+    * @return int The weight of this Vertex, 1 unless given
+    */
+
+    public int getWeight(){
+        return this.weight;
+    }
+
+  /**
+    *
+    * @param weight The new weight of this Vertex
+    */
+
+    public void setWeight(int weight){
+        if(weight < 0){
+            throw new IllegalArgumentException("Vertex weight must not be negative");
+        }
+        this.weight = weight;
+    }
+
   /**
     *
     * @return String The label of this Vertex
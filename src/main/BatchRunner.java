@@ -0,0 +1,349 @@
+package main;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import algorithms.FiducciaMattheysesAlgorithm;
+import algorithms.KernighanLinAlgorithm;
+import algorithms.MultilevelAlgorithm;
+import algorithms.PartitionCache;
+import algorithms.PartitionState;
+import algorithms.PassCounters;
+import algorithms.RefinementOptions;
+import graph.GraphReader;
+import graph.IntGraph;
+
+/**
+ * Partitions many graph files in one JVM, several at a time on a fixed
+ * number of threads. Every graph is written to a file of its own in the
+ * output directory, as the two clusters the ProcessFile classes print, and
+ * summary.tsv there lists the size, cut cost, read and partition times and
+ * the refinement passes, moves and undone moves of every job. Repeated
+ * graphs are answered from PartitionCache.getShared(), but only on an exact
+ * hit: jobs never warm start from one another, so every result is the same
+ * whatever order the jobs run in.
+ *
+ * The input is a directory, whose files are all partitioned, or a manifest
+ * listing one graph file per line, relative to the manifest, where lines
+ * starting with # are comments. See GraphReader.read for the formats.
+ *
+ * Usage: BatchRunner [-a kl|fm|multilevel] [-p threads] [-o outputDir] input
+ */
+public class BatchRunner {
+
+    public enum Algorithm { KERNIGHAN_LIN, FIDUCCIA_MATTHEYSES, MULTILEVEL }
+
+    static final String SUMMARY = "summary.tsv";
+
+    /**
+     * Outcome of one job, with error set instead of the cut cost if it failed
+     */
+    public static class Result {
+        public final File input;
+        public final File output;
+        public int vertexCount, edgeCount;
+        public double cutCost;
+        public double readMillis, partitionMillis;
+        // refinement passes of the job, none when the partition came from the cache
+        public final PassCounters counters = new PassCounters();
+        public String error;
+
+        Result(File input, File output){
+            this.input = input;
+            this.output = output;
+        }
+    }
+
+    private final Algorithm algorithm;
+    private final int parallelism;
+    private final File outputDirectory;
+
+    /**
+     * @param algorithm The partitioner every job runs
+     * @param parallelism Number of jobs run at once
+     * @param outputDirectory Where the partitions and the summary go, created if needed
+     */
+    public BatchRunner(Algorithm algorithm, int parallelism, File outputDirectory){
+        if(parallelism < 1){
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        this.algorithm = algorithm;
+        this.parallelism = parallelism;
+        this.outputDirectory = outputDirectory;
+    }
+
+    public static void main(String[] args){
+        Algorithm algorithm = Algorithm.FIDUCCIA_MATTHEYSES;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        String output = "partitions";
+        String input = null;
+        for(int i = 0; i < args.length; i++){
+            if(args[i].equals("-a") && i + 1 < args.length){
+                algorithm = parseAlgorithm(args[++i]);
+            } else if(args[i].equals("-p") && i + 1 < args.length){
+                parallelism = parseParallelism(args[++i]);
+            } else if(args[i].equals("-o") && i + 1 < args.length){
+                output = args[++i];
+            } else {
+                input = args[i];
+            }
+        }
+        if(input == null || algorithm == null || parallelism < 1){
+            System.out.println("Usage: BatchRunner [-a kl|fm|multilevel] [-p threads] [-o outputDir] input");
+            return;
+        }
+        try{
+            long start = System.nanoTime();
+            BatchRunner runner = new BatchRunner(algorithm, parallelism, new File(output));
+            List<Result> results = runner.run(listInputs(new File(input)));
+            int failed = 0;
+            for(Result r : results){
+                if(r.error != null){
+                    System.out.println("Failed " + r.input + ": " + r.error);
+                    failed++;
+                }
+            }
+            System.out.println(String.format(Locale.ROOT, "%d jobs, %d failed, %.1f s, summary in %s",
+                    results.size(), failed, (System.nanoTime() - start) / 1e9, new File(output, SUMMARY)));
+        } catch (IOException ex) {
+            System.out.println("Error: " + ex.getMessage());
+        }
+    }
+
+    /**
+     *
+     * @return the algorithm for kl, fm or multilevel, or null
+     */
+    static Algorithm parseAlgorithm(String name){
+        if(name.equalsIgnoreCase("kl")){
+            return Algorithm.KERNIGHAN_LIN;
+        }
+        if(name.equalsIgnoreCase("fm")){
+            return Algorithm.FIDUCCIA_MATTHEYSES;
+        }
+        if(name.equalsIgnoreCase("multilevel")){
+            return Algorithm.MULTILEVEL;
+        }
+        return null;
+    }
+
+    /**
+     *
+     * @return the number of threads given, or 0 if it is not a positive number
+     */
+    static int parseParallelism(String value){
+        try{
+            return Math.max(0, Integer.parseInt(value));
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    /**
+     *
+     * @return the files of a directory in name order, or the files listed by a manifest
+     */
+    public static List<File> listInputs(File input) throws IOException{
+        List<File> files = new ArrayList<File>();
+        if(input.isDirectory()){
+            File[] listed = input.listFiles();
+            if(listed == null){
+                throw new IOException("Cannot list directory " + input);
+            }
+            Arrays.sort(listed);
+            for(File f : listed){
+                if(f.isFile() && !f.getName().startsWith(".")){
+                    files.add(f);
+                }
+            }
+            return files;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(input), "UTF-8"));
+        try{
+            String line;
+            while((line = reader.readLine()) != null){
+                line = line.trim();
+                if(line.isEmpty() || line.startsWith("#")){
+                    continue;
+                }
+                File f = new File(line);
+                files.add(f.isAbsolute() ? f : new File(input.getAbsoluteFile().getParentFile(), line));
+            }
+        } finally {
+            reader.close();
+        }
+        return files;
+    }
+
+    /**
+     * Partitions every input, at most parallelism at a time, and writes the summary
+     * @return the results in the order of the inputs
+     */
+    public List<Result> run(List<File> inputs) throws IOException{
+        if(!outputDirectory.isDirectory() && !outputDirectory.mkdirs()){
+            throw new IOException("Cannot create output directory " + outputDirectory);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        List<Future<Result>> futures = new ArrayList<Future<Result>>();
+        HashSet<String> names = new HashSet<String>();
+        try{
+            for(int i = 0; i < inputs.size(); i++){
+                final File input = inputs.get(i);
+                // inputs of the same name from different directories get numbered,
+                // past any input already named like the numbered one
+                String name = input.getName() + ".part";
+                for(int k = i; !names.add(name); k++){
+                    name = input.getName() + "-" + k + ".part";
+                }
+                final File output = new File(outputDirectory, name);
+                futures.add(executor.submit(new Callable<Result>() {
+                    public Result call(){
+                        return runJob(input, output);
+                    }
+                }));
+            }
+            List<Result> results = new ArrayList<Result>();
+            for(Future<Result> f : futures){
+                try{
+                    results.add(f.get());
+                } catch (ExecutionException ex) {
+                    throw new IllegalStateException(ex.getCause());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for jobs");
+                }
+            }
+            writeSummary(results);
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads, partitions and writes one graph, catching any failure into the result
+     */
+    Result runJob(File input, File output){
+        Result result = new Result(input, output);
+        try{
+            long start = System.nanoTime();
+            IntGraph graph = GraphReader.read(input.getPath());
+            long read = System.nanoTime();
+            result.readMillis = (read - start) / 1e6;
+            result.vertexCount = graph.getVertexCount();
+            result.edgeCount = graph.getEdgeCount();
+            int[] partition = partition(graph, new RefinementOptions().setListener(result.counters));
+            result.partitionMillis = (System.nanoTime() - read) / 1e6;
+            result.cutCost = PartitionState.cutCost(graph, partition);
+            write(graph, partition, output);
+        } catch (Exception ex) {
+            result.error = String.valueOf(ex);
+        }
+        return result;
+    }
+
+    /**
+     *
+     * @return the cached partition of graph, or a new one from the chosen algorithm with the given options
+     */
+    int[] partition(IntGraph graph, RefinementOptions options){
+        PartitionCache cache = PartitionCache.getShared();
+        PartitionCache.Key key = PartitionCache.key(graph, algorithm.name(), options);
+        int[] partition = cache.get(key);
+        if(partition != null){
+            return partition;
+        }
+        boolean stopped;
+        switch(algorithm){
+            case KERNIGHAN_LIN:
+                KernighanLinAlgorithm kl = KernighanLinAlgorithm.process(graph, null, options);
+                partition = kl.getPartition();
+                stopped = kl.isStopped();
+                break;
+            case FIDUCCIA_MATTHEYSES:
+                FiducciaMattheysesAlgorithm fm = FiducciaMattheysesAlgorithm.process(graph, null, options);
+                partition = fm.getPartition();
+                stopped = fm.isStopped();
+                break;
+            default:
+                MultilevelAlgorithm ml = MultilevelAlgorithm.process(graph,
+                        MultilevelAlgorithm.Refinement.FIDUCCIA_MATTHEYSES, options);
+                partition = ml.getPartition();
+                stopped = ml.isStopped();
+        }
+        // the best so far of a stopped run is no answer for callers without a deadline
+        if(!stopped){
+            cache.put(key, partition);
+        }
+        return partition;
+    }
+
+    /**
+     * Writes both clusters as "Cluster i" followed by its vertices on one line
+     */
+    static void write(IntGraph g, int[] partition, File output) throws IOException{
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(output), "UTF-8"), 1 << 16);
+        try{
+            for(int p = 0; p < 2; p++){
+                writer.write("Cluster " + (p + 1) + "\n[");
+                boolean first = true;
+                for(int v = 0; v < partition.length; v++){
+                    if(partition[v] != p){
+                        continue;
+                    }
+                    if(!first){
+                        writer.write(", ");
+                    }
+                    writer.write("Vertex ");
+                    writer.write(g.getLabel(v));
+                    first = false;
+                }
+                writer.write("]\n");
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     *
+     * @return text with its tabs and line breaks replaced by spaces, so it stays one field of the summary
+     */
+    static String field(String text){
+        return text.replace('\t', ' ').replace('\r', ' ').replace('\n', ' ');
+    }
+
+    private void writeSummary(List<Result> results) throws IOException{
+        Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(new File(outputDirectory, SUMMARY)), "UTF-8"));
+        try{
+            writer.write("input\toutput\tvertices\tedges\tcut\tread ms\tpartition ms\tpasses\tmoves\tundone\terror\n");
+            for(Result r : results){
+                writer.write(String.format(Locale.ROOT, "%s\t%s\t%d\t%d\t%.0f\t%.3f\t%.3f\t%d\t%d\t%d\t%s\n",
+                        field(r.input.toString()), (r.error == null) ? field(r.output.getName()) : "",
+                        r.vertexCount, r.edgeCount, r.cutCost, r.readMillis, r.partitionMillis,
+                        r.counters.getPasses(), r.counters.getMoves(), r.counters.getMovesRolledBack(),
+                        (r.error == null) ? "" : field(r.error)));
+            }
+        } finally {
+            writer.close();
+        }
+    }
+}
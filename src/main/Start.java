@@ -5,8 +5,14 @@ import algorithms.KerninghanLinProcessFile;
 
 public class Start {
 
+	 /** Usage: Start [-a kl|fm|multilevel] [-p threads] [-o outputDir] input, see BatchRunner.
+	  *  Without arguments the two sample graphs are partitioned and printed **/
 	 public static void main(String[] args){
-		 KerninghanLinProcessFile.runKerninghanLin();
-		 FiducciaMattheysesProcessFile.runKerninghanLin();
+		 if (args.length > 0) {
+			 BatchRunner.main(args);
+			 return;
+		 }
+		 KerninghanLinProcessFile.runKerninghanLin("src/algorithms/gC.txt");
+		 FiducciaMattheysesProcessFile.runKerninghanLin("src/algorithms/graph.txt");
 	 }  
 }
@@ -0,0 +1,211 @@
+package algorithms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import graph.CompactGraph;
+import graph.GraphGenerator;
+import graph.IntGraph;
+
+/**
+ * Checks that every algorithm reports the cut cost of the partition it returns,
+ * and that the refinements keep the sides within RefinementOptions.getMaxSideWeight
+ */
+public class CutCostTest {
+
+  /** A geometric graph with vertex weights 1 .. 20 and edge weights 1 .. 9 **/
+  private static CompactGraph weightedGraph(int n, long seed) {
+    CompactGraph base = GraphGenerator.randomGeometric(n, Math.sqrt(6 / (Math.PI * n)), seed);
+    Random random = new Random(seed);
+    CompactGraph.Builder builder = new CompactGraph.Builder(n);
+    for (int v = 0; v < n; v++) {
+      builder.setVertexWeight(v, 1 + random.nextInt(20));
+      for (int i = 0; i < base.getDegree(v); i++) {
+        int u = base.getNeighbor(v, i);
+        if (u > v) builder.addEdge(v, u, 1 + random.nextInt(9));
+      }
+    }
+    return builder.build();
+  }
+
+  /** A random graph with edge weights -5 .. 5 **/
+  private static CompactGraph signedGraph(int n, long seed) {
+    Random random = new Random(seed);
+    CompactGraph.Builder builder = new CompactGraph.Builder(n);
+    for (int i = 0; i < 3 * n; i++) {
+      int u = random.nextInt(n), v = random.nextInt(n);
+      if (u != v) builder.addEdge(u, v, random.nextInt(11) - 5);
+    }
+    return builder.build();
+  }
+
+  private static void assertCut(IntGraph g, double cut, int[] partition) {
+    assertEquals(PartitionState.cutCost(g, partition), cut, 0);
+  }
+
+  private static void assertBalanced(IntGraph g, int[] partition, RefinementOptions options) {
+    long totalWeight = 0;
+    long[] sideWeight = new long[2];
+    int minVertexWeight = Integer.MAX_VALUE, maxVertexWeight = 0;
+    for (int v = 0; v < g.getVertexCount(); v++) {
+      totalWeight += g.getVertexWeight(v);
+      sideWeight[partition[v]] += g.getVertexWeight(v);
+      minVertexWeight = Math.min(minVertexWeight, g.getVertexWeight(v));
+      maxVertexWeight = Math.max(maxVertexWeight, g.getVertexWeight(v));
+    }
+    for (int s = 0; s < 2; s++) {
+      long max = options.getMaxSideWeight(s, totalWeight, minVertexWeight, maxVertexWeight);
+      assertTrue("side " + s + " weighs " + sideWeight[s] + " over " + max, sideWeight[s] <= max);
+    }
+  }
+
+  @Test
+  public void fiducciaMattheyses() {
+    CompactGraph g = weightedGraph(3000, 1);
+    for (boolean boundaryOnly : new boolean[] { false, true }) {
+      RefinementOptions options = new RefinementOptions().setImbalance(0.03).setBoundaryOnly(boundaryOnly);
+      FiducciaMattheysesAlgorithm fm = FiducciaMattheysesAlgorithm.process(g, null, options);
+      assertCut(g, fm.getCutCost(), fm.getPartition());
+      assertBalanced(g, fm.getPartition(), options);
+    }
+  }
+
+  @Test
+  public void kernighanLin() {
+    CompactGraph g = weightedGraph(1000, 2);
+    for (boolean boundaryOnly : new boolean[] { false, true }) {
+      RefinementOptions options = new RefinementOptions().setImbalance(0.03).setBoundaryOnly(boundaryOnly);
+      KernighanLinAlgorithm kl = KernighanLinAlgorithm.process(g, null, options);
+      assertCut(g, kl.getCutCost(), kl.getPartition());
+      assertBalanced(g, kl.getPartition(), options);
+    }
+  }
+
+  @Test
+  public void negativeWeights() {
+    CompactGraph g = signedGraph(400, 3);
+    RefinementOptions options = new RefinementOptions();
+    FiducciaMattheysesAlgorithm fm = FiducciaMattheysesAlgorithm.process(g, null, options);
+    assertCut(g, fm.getCutCost(), fm.getPartition());
+    KernighanLinAlgorithm kl = KernighanLinAlgorithm.process(g, null, options);
+    assertCut(g, kl.getCutCost(), kl.getPartition());
+    MultilevelAlgorithm ml = MultilevelAlgorithm.process(g);
+    assertCut(g, ml.getCutCost(), ml.getPartition());
+  }
+
+  @Test
+  public void multilevel() {
+    CompactGraph g = weightedGraph(20000, 4);
+    for (MultilevelAlgorithm.Refinement refinement : MultilevelAlgorithm.Refinement.values()) {
+      MultilevelAlgorithm ml = MultilevelAlgorithm.process(g, refinement, new RefinementOptions());
+      assertCut(g, ml.getCutCost(), ml.getPartition());
+    }
+    MultilevelAlgorithm empty = MultilevelAlgorithm.process(new CompactGraph.Builder(0).build());
+    assertEquals(0, empty.getCutCost(), 0);
+  }
+
+  @Test
+  public void multilevelReportsStop() {
+    // small enough that no level is coarsened, so only the initial split can stop
+    CompactGraph g = weightedGraph(80, 10);
+    CancellationToken cancellation = new CancellationToken();
+    cancellation.cancel();
+    MultilevelAlgorithm ml = MultilevelAlgorithm.process(g, MultilevelAlgorithm.Refinement.FIDUCCIA_MATTHEYSES,
+        new RefinementOptions().setCancellation(cancellation));
+    assertTrue(ml.isStopped());
+    assertCut(g, ml.getCutCost(), ml.getPartition());
+  }
+
+  @Test
+  public void multilevelHeavyVertices() {
+    CompactGraph base = GraphGenerator.grid(40, 40);
+    CompactGraph.Builder builder = new CompactGraph.Builder(base.getVertexCount());
+    for (int v = 0; v < base.getVertexCount(); v++) {
+      builder.setVertexWeight(v, Integer.MAX_VALUE / 3);
+      for (int i = 0; i < base.getDegree(v); i++)
+        if (base.getNeighbor(v, i) > v) builder.addEdge(v, base.getNeighbor(v, i));
+    }
+    CompactGraph g = builder.build();
+    MultilevelAlgorithm ml = MultilevelAlgorithm.process(g);
+    assertCut(g, ml.getCutCost(), ml.getPartition());
+  }
+
+  @Test
+  public void labelPropagation() {
+    CompactGraph g = weightedGraph(20000, 5);
+    RefinementOptions options = new RefinementOptions().setImbalance(0.03).setListener(new PassCounters());
+    int[] start = SpectralBisection.process(g, options, 50).getPartition();
+    for (LabelPropagationRefinement.Polish polish : LabelPropagationRefinement.Polish.values()) {
+      // more threads than cores, so that moves of neighbours interleave
+      LabelPropagationRefinement lp = LabelPropagationRefinement.process(g, start, options, polish, false,
+          new ForkJoinPool(4));
+      assertCut(g, lp.getCutCost(), lp.getPartition());
+      assertBalanced(g, lp.getPartition(), options);
+    }
+  }
+
+  @Test
+  public void labelPropagationDeterministic() {
+    CompactGraph g = weightedGraph(20000, 6);
+    RefinementOptions options = new RefinementOptions().setImbalance(0.03);
+    LabelPropagationRefinement one = LabelPropagationRefinement.process(g, null, options,
+        LabelPropagationRefinement.Polish.NONE, true, new ForkJoinPool(1));
+    LabelPropagationRefinement four = LabelPropagationRefinement.process(g, null, options,
+        LabelPropagationRefinement.Polish.NONE, true, new ForkJoinPool(4));
+    assertCut(g, one.getCutCost(), one.getPartition());
+    assertEquals(one.getCutCost(), four.getCutCost(), 0);
+    assertTrue(Arrays.equals(one.getPartition(), four.getPartition()));
+  }
+
+  @Test
+  public void spectralBisection() {
+    CompactGraph g = weightedGraph(5000, 7);
+    SpectralBisection sb = SpectralBisection.process(g, new RefinementOptions(), 100);
+    assertCut(g, sb.getCutCost(), sb.getPartition());
+  }
+
+  @Test
+  public void multiStart() {
+    CompactGraph g = weightedGraph(3000, 8);
+    MultiStartAlgorithm ms = MultiStartAlgorithm.process(g, 4, 1, MultilevelAlgorithm.Refinement.FIDUCCIA_MATTHEYSES,
+        new RefinementOptions());
+    assertCut(g, ms.getCutCost(), ms.getPartition());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void multiStartRejectsLabelPropagation() {
+    MultiStartAlgorithm.process(weightedGraph(100, 8), 2, 1, MultilevelAlgorithm.Refinement.LABEL_PROPAGATION,
+        new RefinementOptions());
+  }
+
+  @Test
+  public void streamingRefine() {
+    CompactGraph g = weightedGraph(5000, 11);
+    StreamingPartitioner sp = StreamingPartitioner.process(g, 8, StreamingPartitioner.Scoring.FENNEL, 0.05);
+    assertCut(g, sp.getCutCost(), sp.getPartition());
+    sp.refine(g, new RefinementOptions().setBoundaryOnly(true));
+    assertCut(g, sp.getCutCost(), sp.getPartition());
+  }
+
+  @Test
+  public void session() {
+    CompactGraph g = weightedGraph(5000, 9);
+    PartitionSession session = PartitionSession.start(g, new RefinementOptions());
+    Random random = new Random(9);
+    for (int batch = 0; batch < 20; batch++) {
+      for (int k = 0; k < 20; k++) {
+        int u = random.nextInt(5000), v = random.nextInt(5000);
+        if (random.nextBoolean()) session.addEdge(u, v, 1 + random.nextInt(5));
+        else if (session.getGraph().getDegree(u) > 0) session.removeEdge(u, session.getGraph().getNeighbor(u, 0));
+      }
+      session.refresh();
+      assertCut(session.getGraph(), session.getCutCost(), session.getPartition());
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks EdgeIndex against a HashMap over random adds, lookups and removes,
+ * the removes exercising the backward shift of long probe runs
+ */
+public class EdgeIndexTest {
+
+    @Test
+    public void keyIsSymmetric(){
+        assertEquals(EdgeIndex.key(3, 7), EdgeIndex.key(7, 3));
+        assertEquals(EdgeIndex.key(0, Integer.MAX_VALUE), EdgeIndex.key(Integer.MAX_VALUE, 0));
+    }
+
+    @Test
+    public void putGetRemoveRoundTrip(){
+        Random random = new Random(1);
+        EdgeIndex index = new EdgeIndex();
+        Map<Long, Edge> expected = new HashMap<Long, Edge>();
+        Vertex one = new Vertex("a"), two = new Vertex("b");
+        // few vertices so keys repeat and runs of removes and re-adds collide
+        for(int i = 0; i < 200000; i++){
+            long key = EdgeIndex.key(random.nextInt(300), random.nextInt(300));
+            int op = random.nextInt(3);
+            if(op == 0){
+                Edge e = new Edge(one, two, i);
+                assertSame(expected.put(key, e), index.put(key, e));
+            } else if(op == 1){
+                assertSame(expected.remove(key), index.remove(key));
+            } else {
+                assertSame(expected.get(key), index.get(key));
+            }
+            assertEquals(expected.size(), index.size());
+        }
+        for(Map.Entry<Long, Edge> entry: expected.entrySet()){
+            assertSame(entry.getValue(), index.get(entry.getKey()));
+        }
+        List<Edge> values = new ArrayList<Edge>();
+        index.addValuesTo(values);
+        assertEquals(expected.size(), values.size());
+    }
+
+    @Test
+    public void removeEverything(){
+        EdgeIndex index = new EdgeIndex();
+        Vertex one = new Vertex("a"), two = new Vertex("b");
+        for(int v = 0; v < 5000; v++){
+            index.put(EdgeIndex.key(v, v + 1), new Edge(one, two));
+        }
+        for(int v = 4999; v >= 0; v -= 2){
+            index.remove(EdgeIndex.key(v + 1, v));
+        }
+        for(int v = 0; v < 5000; v++){
+            Edge e = index.get(EdgeIndex.key(v, v + 1));
+            if(v % 2 == 1){
+                assertNull(e);
+            } else {
+                assertEquals(1, e.getWeight());
+            }
+        }
+        for(int v = 0; v < 5000; v += 2){
+            index.remove(EdgeIndex.key(v, v + 1));
+        }
+        assertEquals(0, index.size());
+        assertNull(index.get(EdgeIndex.key(0, 1)));
+    }
+}
@@ -0,0 +1,105 @@
+package graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that ParallelGraphReader builds the same graph as GraphReader from
+ * files past PARALLEL_THRESHOLD, with duplicate edges, comments and blank lines
+ */
+public class ParallelGraphReaderTest {
+
+    @ClassRule
+    public static TemporaryFolder folder = new TemporaryFolder();
+
+    private static ForkJoinPool pool;
+    private static File edges, matrix;
+
+    @BeforeClass
+    public static void writeFiles() throws IOException{
+        pool = new ForkJoinPool(4);
+        Random random = new Random(3);
+        edges = folder.newFile("graph.edges");
+        Writer writer = new BufferedWriter(new FileWriter(edges));
+        try{
+            writer.write("# header\n");
+            int n = 200000;
+            for(int i = 0; i < 700000; i++){
+                writer.write(random.nextInt(n) + " " + random.nextInt(n)
+                        + (random.nextBoolean() ? " " + (1 + random.nextInt(9)) : "") + "\n");
+                if(i % 50000 == 0){
+                    writer.write("% comment\n\n");
+                }
+                // repeats of a few edges, which the readers merge
+                if(i % 1000 == 0){
+                    writer.write("5 7 2\n7 5\n");
+                }
+            }
+        } finally {
+            writer.close();
+        }
+        matrix = folder.newFile("graph.matrix");
+        writer = new BufferedWriter(new FileWriter(matrix));
+        try{
+            int m = 1600;
+            for(int i = 0; i < m; i++){
+                StringBuilder line = new StringBuilder();
+                for(int j = 0; j < m; j++){
+                    if(j > 0){
+                        line.append(' ');
+                    }
+                    line.append(random.nextInt(50) == 0 ? 1 + random.nextInt(5) : 0);
+                }
+                writer.write(line.append('\n').toString());
+            }
+        } finally {
+            writer.close();
+        }
+        assertTrue(edges.length() >= ParallelGraphReader.PARALLEL_THRESHOLD);
+        assertTrue(matrix.length() >= ParallelGraphReader.PARALLEL_THRESHOLD);
+    }
+
+    @AfterClass
+    public static void shutdown(){
+        pool.shutdown();
+    }
+
+    private static void assertSameGraph(IntGraph expected, IntGraph actual){
+        assertEquals(expected.getVertexCount(), actual.getVertexCount());
+        assertEquals(expected.getEdgeCount(), actual.getEdgeCount());
+        for(int v = 0; v < expected.getVertexCount(); v++){
+            assertEquals(expected.getVertexWeight(v), actual.getVertexWeight(v));
+            assertEquals(expected.getDegree(v), actual.getDegree(v));
+            for(int i = 0; i < expected.getDegree(v); i++){
+                assertEquals(expected.getNeighbor(v, i), actual.getNeighbor(v, i));
+                assertEquals(expected.getNeighborWeight(v, i), actual.getNeighborWeight(v, i));
+            }
+        }
+    }
+
+    @Test
+    public void edgeList() throws IOException{
+        assertSameGraph(GraphReader.readEdgeList(edges.getPath()),
+                ParallelGraphReader.readEdgeList(edges.getPath(), pool));
+    }
+
+    @Test
+    public void adjacencyMatrix() throws IOException{
+        assertSameGraph(GraphReader.readAdjacencyMatrix(matrix.getPath()),
+                ParallelGraphReader.readAdjacencyMatrix(matrix.getPath(), pool));
+    }
+}